@@ -0,0 +1,85 @@
+package edu.cg.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.cg.ImageProcessor;
+import edu.cg.Logger;
+import edu.cg.RGBWeights;
+
+/**
+ * The per pixel operations of ImageProcessor over a sweep of image sizes.
+ * Every invocation constructs the processor, as the application does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+@State(Scope.Benchmark)
+public class ImageProcessorBenchmark {
+
+    private static final Logger QUIET = Logger.NONE;
+
+    @Param({ "0.25", "1", "4", "12", "24" })
+    public double megapixels;
+
+    // The output size of the resizing operations, relative to the input size
+    @Param({ "0.5", "1.5" })
+    public double scale;
+
+    private BufferedImage image;
+    private RGBWeights rgbWeights;
+    private int outWidth;
+    private int outHeight;
+
+    @Setup
+    public void setup() {
+        image = SyntheticImages.create(megapixels, 42);
+        rgbWeights = new RGBWeights(2, 5, 1);
+        outWidth = (int) Math.round(image.getWidth() * scale);
+        outHeight = (int) Math.round(image.getHeight() * scale);
+    }
+
+    @Benchmark
+    public BufferedImage greyscale() {
+        return new ImageProcessor(QUIET, image, rgbWeights).greyscale();
+    }
+
+    @Benchmark
+    public BufferedImage gradientMagnitude() {
+        return new ImageProcessor(QUIET, image, rgbWeights).gradientMagnitude();
+    }
+
+    @Benchmark
+    public BufferedImage nearestNeighbor() {
+        return new ImageProcessor(QUIET, image, rgbWeights, outWidth, outHeight).nearestNeighbor();
+    }
+
+    @Benchmark
+    public BufferedImage bilinear() {
+        return new ImageProcessor(QUIET, image, rgbWeights, outWidth, outHeight).bilinear();
+    }
+
+    @Benchmark
+    public BufferedImage bicubic() {
+        return new ImageProcessor(QUIET, image, rgbWeights, outWidth, outHeight).bicubic();
+    }
+
+    @Benchmark
+    public BufferedImage lanczos() {
+        return new ImageProcessor(QUIET, image, rgbWeights, outWidth, outHeight).lanczos();
+    }
+}
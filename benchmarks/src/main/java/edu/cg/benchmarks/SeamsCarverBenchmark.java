@@ -0,0 +1,89 @@
+package edu.cg.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.cg.Logger;
+import edu.cg.RGBWeights;
+import edu.cg.SeamsCarver;
+
+/**
+ * Seam carving over a sweep of image sizes, seam counts and seam search modes.
+ * The large sizes take minutes per seam count, so the default sweep stops at 4 MP,
+ * larger ones are selected with -p megapixels=12,24.
+ * The resizes out of a precomputed removal order are in SeamsIndexMapBenchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+@State(Scope.Benchmark)
+public class SeamsCarverBenchmark {
+
+    private static final Logger QUIET = Logger.NONE;
+
+    @Param({ "0.25", "1", "4" })
+    public double megapixels;
+
+    @Param({ "1", "16", "64" })
+    public int seams;
+
+    // exact, incremental, multi (adaptive multi seam passes) or pyramid
+    @Param({ "exact", "incremental", "multi", "pyramid" })
+    public String search;
+
+    private BufferedImage image;
+    private RGBWeights rgbWeights;
+
+    @Setup
+    public void setup() {
+        image = SyntheticImages.create(megapixels, 42);
+        rgbWeights = new RGBWeights(2, 5, 1);
+    }
+
+    @Benchmark
+    public BufferedImage reduceWidth() {
+        return configured(new SeamsCarver(QUIET, image, image.getWidth() - seams, rgbWeights)).resize();
+    }
+
+    @Benchmark
+    public BufferedImage increaseWidth() {
+        return configured(new SeamsCarver(QUIET, image, image.getWidth() + seams, rgbWeights)).resize();
+    }
+
+    @Benchmark
+    public BufferedImage retargetBoth() {
+        return configured(new SeamsCarver(QUIET, image, image.getWidth() - seams,
+                image.getHeight() - seams, rgbWeights)).resize();
+    }
+
+    private SeamsCarver configured(SeamsCarver carver) {
+        switch (search) {
+            case "incremental":
+                carver.setIncrementalUpdate(true);
+                break;
+            case "multi":
+                carver.setSeamsPerPass(0);
+                break;
+            case "pyramid":
+                carver.setPyramidSearch(2, 8);
+                break;
+            default:
+                break;
+        }
+        return carver;
+    }
+}
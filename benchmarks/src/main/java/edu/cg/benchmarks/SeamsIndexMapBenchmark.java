@@ -0,0 +1,59 @@
+package edu.cg.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.cg.Logger;
+import edu.cg.RGBWeights;
+import edu.cg.SeamsCarver;
+import edu.cg.SeamsIndexMap;
+
+/**
+ * Resizes out of a precomputed seam removal order, over a sweep of image sizes
+ * and seam counts. The removal order of half of the width is found once per trial,
+ * before the measurement, so only the gather pass of every resize is measured.
+ * Finding it takes minutes at 4 MP, larger sizes are selected with -p megapixels=12,24.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms6g", "-Xmx6g" })
+@State(Scope.Benchmark)
+public class SeamsIndexMapBenchmark {
+
+    private static final Logger QUIET = Logger.NONE;
+
+    @Param({ "0.25", "1", "4" })
+    public double megapixels;
+
+    @Param({ "1", "16", "64" })
+    public int seams;
+
+    private BufferedImage image;
+    private SeamsIndexMap indexMap;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        image = SyntheticImages.create(megapixels, 42);
+        indexMap = new SeamsIndexMap(QUIET, image, new RGBWeights(2, 5, 1), SeamsCarver.Orientation.VERTICAL);
+    }
+
+    @Benchmark
+    public BufferedImage reduceWidth() {
+        return indexMap.resize(image.getWidth() - seams);
+    }
+}
@@ -0,0 +1,65 @@
+package edu.cg.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic images for the benchmarks: smooth gradients, flat rectangles with
+ * sharp edges and a little noise, so the seams neither follow a trivial path nor
+ * see pure noise. The same size and seed always give the same pixels.
+ */
+public final class SyntheticImages {
+
+    //MARK: Aspect ratio of the images, width / height
+    private static final double ASPECT = 4.0 / 3.0;
+
+    private SyntheticImages() {
+    }
+
+    /**
+     * @param megapixels - The number of pixels, in millions.
+     * @return - A TYPE_INT_RGB image of about that many pixels, 4:3 landscape.
+     */
+    public static BufferedImage create(double megapixels, long seed) {
+        int height = Math.max(2, (int) Math.round(Math.sqrt(megapixels * 1e6 / ASPECT)));
+        int width = Math.max(2, (int) Math.round(height * ASPECT));
+        return create(width, height, seed);
+    }
+
+    public static BufferedImage create(int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        SplittableRandom random = new SplittableRandom(seed);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = x * 255 / width;
+                int green = y * 255 / height;
+                int blue = (x + y) * 127 / (width + height);
+                pixels[y * width + x] = red << 16 | green << 8 | blue;
+            }
+        }
+
+        // Rectangles of random flat colors, about one per 20000 pixels
+        int rectangles = Math.max(1, width / 100 * height / 200);
+        for (int i = 0; i < rectangles; i++) {
+            int fromX = random.nextInt(width);
+            int fromY = random.nextInt(height);
+            int toX = Math.min(width, fromX + 1 + random.nextInt(Math.max(1, width / 8)));
+            int toY = Math.min(height, fromY + 1 + random.nextInt(Math.max(1, height / 8)));
+            int color = random.nextInt(0x1000000);
+            for (int y = fromY; y < toY; y++) {
+                for (int x = fromX; x < toX; x++) {
+                    pixels[y * width + x] = color;
+                }
+            }
+        }
+
+        for (int i = 0; i < pixels.length; i++) {
+            int noise = random.nextInt(16) * 0x010101;
+            pixels[i] = (pixels[i] ^ noise) & 0xFFFFFF;
+        }
+        return image;
+    }
+}
@@ -0,0 +1,124 @@
+package edu.cg;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import edu.cg.Logger.Level;
+
+/**
+ * A bounded cache of values which are shared between the calls, so they must not
+ * be modified. Once the cached values take more than the byte budget, the least
+ * recently used ones are evicted. The cache can be used by several threads, a value
+ * which misses is calculated outside of the lock. The caches of the operation
+ * results, of the mipmap pyramids and of the derived planes key it by their own keys.
+ */
+public class BoundedLruCache<K, V> {
+
+    //MARK: Fields
+    protected final Logger logger;
+    private final String valueName;
+    private final Level level;
+    private final long maxBytes;
+    private final ToLongFunction<? super V> sizeOf;
+    private final LinkedHashMap<K, V> values = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    //MARK: Constructor
+    /**
+     * @param valueName - The name of the cached values, for the log and toString().
+     * @param level - The level of the hits and evictions messages.
+     * @param maxBytes - The budget of the cached values.
+     * @param sizeOf - The size of a value, in bytes.
+     */
+    public BoundedLruCache(Logger logger, String valueName, Level level, long maxBytes,
+                           ToLongFunction<? super V> sizeOf) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("The cache size must not be negative");
+
+        this.logger = logger;
+        this.valueName = valueName;
+        this.level = level;
+        this.maxBytes = maxBytes;
+        this.sizeOf = sizeOf;
+    }
+
+    //MARK: Methods
+    /**
+     * @return - The cached value of the key, or the calculated value, which is
+     * cached unless it is larger than the whole budget.
+     */
+    public V get(K key, Supplier<? extends V> calculation) {
+        synchronized (this) {
+            V cached = values.get(key);
+            if (cached != null) {
+                hits++;
+                logger.log(level, () -> "Cached " + valueName + ": " + key);
+                return cached;
+            }
+            misses++;
+        }
+
+        V calculated = calculation.get();
+        long calculatedBytes = sizeOf.applyAsLong(calculated);
+        if (calculatedBytes <= maxBytes) {
+            synchronized (this) {
+                V previous = values.put(key, calculated);
+                if (previous != null) {
+                    bytes -= sizeOf.applyAsLong(previous);
+                }
+                bytes += calculatedBytes;
+                evict();
+            }
+        }
+        return calculated;
+    }
+
+    public synchronized void clear() {
+        values.clear();
+        bytes = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return Character.toUpperCase(valueName.charAt(0)) + valueName.substring(1) + " cache: "
+                + values.size() + " " + valueName + "s, " + bytes + "/" + maxBytes + " bytes, "
+                + hits + " hits, " + misses + " misses, " + evictions + " evictions";
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<K, V>> leastRecentlyUsed = values.entrySet().iterator();
+        while (bytes > maxBytes && leastRecentlyUsed.hasNext()) {
+            Map.Entry<K, V> entry = leastRecentlyUsed.next();
+            bytes -= sizeOf.applyAsLong(entry.getValue());
+            leastRecentlyUsed.remove();
+            evictions++;
+            logger.log(level, () -> "Evicted cached " + valueName + ": " + entry.getKey());
+        }
+    }
+}
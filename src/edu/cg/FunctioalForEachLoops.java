@@ -2,12 +2,33 @@ package edu.cg;
 
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 public abstract class FunctioalForEachLoops {
+	//MARK: Primitive callbacks
+	@FunctionalInterface
+	public interface PixelAction {
+		void accept(int y, int x);
+	}
+	
+	@FunctionalInterface
+	public interface RowsAction {
+		/**
+		 * @param fromY - First row of the range.
+		 * @param toY - Row after the last row of the range.
+		 */
+		void accept(int fromY, int toY);
+	}
+	
+	//MARK: Rows ranges per pool thread, for load balancing of the parallel loops
+	private static final int RANGES_PER_THREAD = 4;
+	
 	private int width;
 	private int height;
+	private ForkJoinPool pool;
 	
 	private class Params {
 		public final int width, height;
@@ -28,6 +49,21 @@ public abstract class FunctioalForEachLoops {
 	public FunctioalForEachLoops() {
 		width = height = 0;
 		stack = new ArrayDeque<>();
+		pool = ForkJoinPool.commonPool();
+	}
+	
+	/**
+	 * Sets the pool which runs the parallel loops, the common pool by default.
+	 */
+	public final void setForEachPool(ForkJoinPool pool) {
+		if(pool == null)
+			throw new NullPointerException("The for each pool can not be null.");
+		
+		this.pool = pool;
+	}
+	
+	public final ForkJoinPool getForEachPool() {
+		return pool;
 	}
 	
 	public final void setForEachParameters(int width, int height) {
@@ -76,4 +112,84 @@ public abstract class FunctioalForEachLoops {
 		for(int y = 0; y < height; ++y)
 			action.accept(y);
 	}
+	
+	public final void forEachPixel(PixelAction action) {
+		forEachPixel(action, 0, height, width);
+	}
+	
+	public final void forEachRows(RowsAction action) {
+		action.accept(0, height);
+	}
+	
+	/**
+	 * Same as forEachPixel, but the rows are split into ranges which run
+	 * concurrently on the for each pool. Every row is visited by a single thread,
+	 * from left to right.
+	 */
+	public final void parallelForEachPixel(PixelAction action) {
+		parallelForEachPixel(width, height, action);
+	}
+	
+	/**
+	 * Same as parallelForEachPixel, over the given bounds instead of the loop
+	 * parameters, which it neither reads nor changes. The operations of a
+	 * processor run their loops this way, so they never depend on the parameters
+	 * set by another operation.
+	 */
+	public final void parallelForEachPixel(int width, int height, PixelAction action) {
+		parallelForEachRows(height, (fromY, toY) -> forEachPixel(action, fromY, toY, width));
+	}
+	
+	/**
+	 * Splits the rows into ranges which run concurrently on the for each pool.
+	 * The loop parameters are read once, so the action may change them.
+	 */
+	public final void parallelForEachRows(RowsAction action) {
+		parallelForEachRows(height, action);
+	}
+	
+	/**
+	 * Same as parallelForEachRows, over the rows 0..height (exclusive) instead of
+	 * the loop parameters.
+	 */
+	public final void parallelForEachRows(int height, RowsAction action) {
+		int ranges = Math.min(height, pool.getParallelism() * RANGES_PER_THREAD);
+		if(ranges <= 1) {
+			action.accept(0, height);
+			return;
+		}
+		
+		pool.invoke(new RowsTask(action, 0, height, (height + ranges - 1) / ranges));
+	}
+	
+	private static void forEachPixel(PixelAction action, int fromY, int toY, int width) {
+		for(int y = fromY; y < toY; ++y)
+			for(int x = 0; x < width; ++x)
+				action.accept(y, x);
+	}
+	
+	@SuppressWarnings("serial")
+	private static class RowsTask extends RecursiveAction {
+		private final RowsAction action;
+		private final int fromY, toY, rangeHeight;
+		
+		public RowsTask(RowsAction action, int fromY, int toY, int rangeHeight) {
+			this.action = action;
+			this.fromY = fromY;
+			this.toY = toY;
+			this.rangeHeight = rangeHeight;
+		}
+		
+		@Override
+		protected void compute() {
+			if(toY - fromY <= rangeHeight) {
+				action.accept(fromY, toY);
+				return;
+			}
+			
+			int midY = fromY + (toY - fromY) / 2;
+			invokeAll(new RowsTask(action, fromY, midY, rangeHeight),
+					new RowsTask(action, midY, toY, rangeHeight));
+		}
+	}
 }
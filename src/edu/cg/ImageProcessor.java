@@ -2,6 +2,18 @@ package edu.cg;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.function.Supplier;
+
+import edu.cg.Logger.Level;
+import edu.cg.PhaseMetrics.Phase;
+import edu.cg.PlaneCache.Plane;
 
 public class ImageProcessor extends FunctioalForEachLoops {
 
@@ -12,12 +24,48 @@ public class ImageProcessor extends FunctioalForEachLoops {
     public final int inWidth;
     public final int inHeight;
     public final int workingImageType;
+    private final int outputImageType;
     public final int outWidth;
     public final int outHeight;
 
+    // The working image pixels as packed ARGB values (the getRGB format), row by row
+    protected final int[] workingPixels;
+    // The mipmap pyramid of the working image, the large downscales start from its levels
+    private MipmapPyramid mipmaps;
+    // The planes derived from the working image are shared through the plane cache
+    private PlaneCache planeCache;
+    // Calculated once, by any of the threads which run the methods
+    private volatile int[] greyLevels;
+    private long contentHash;
+    private volatile boolean contentHashed;
+
     //MARK: Constructors
     public ImageProcessor(Logger logger, BufferedImage workingImage,
                           RGBWeights rgbWeights, int outWidth, int outHeight) {
+        this(logger, workingImage, rgbWeights, outWidth, outHeight, readPixels(workingImage), null);
+    }
+
+    public ImageProcessor(Logger logger,
+                          BufferedImage workingImage,
+                          RGBWeights rgbWeights) {
+        this(logger, workingImage, rgbWeights,
+                workingImage.getWidth(), workingImage.getHeight());
+    }
+
+    /**
+     * A processor of a prepared image, which shares its pixels and grey levels
+     * instead of reading and calculating them again.
+     */
+    public ImageProcessor(Logger logger, PreparedImage prepared, int outWidth, int outHeight) {
+        this(logger, prepared.image, prepared.rgbWeights, outWidth, outHeight, prepared.pixels, prepared.greyLevels);
+    }
+
+    /**
+     * @param workingPixels - The working image pixels, never modified by the processor.
+     * @param greyLevels - The grey levels of greyscaleLevels(), or null to calculate them.
+     */
+    private ImageProcessor(Logger logger, BufferedImage workingImage, RGBWeights rgbWeights,
+                           int outWidth, int outHeight, int[] workingPixels, int[] greyLevels) {
         super(); //Initializing for each loops...
 
         this.logger = logger;
@@ -26,172 +74,316 @@ public class ImageProcessor extends FunctioalForEachLoops {
         inWidth = workingImage.getWidth();
         inHeight = workingImage.getHeight();
         workingImageType = workingImage.getType();
+        // Images of a custom type can not be constructed, their output is packed ARGB
+        outputImageType = workingImageType == BufferedImage.TYPE_CUSTOM
+                ? BufferedImage.TYPE_INT_ARGB : workingImageType;
         this.outWidth = outWidth;
         this.outHeight = outHeight;
+        this.workingPixels = workingPixels;
+        this.greyLevels = greyLevels;
         setForEachInputParameters();
     }
 
-    public ImageProcessor(Logger logger,
-                          BufferedImage workingImage,
-                          RGBWeights rgbWeights) {
-        this(logger, workingImage, rgbWeights,
-                workingImage.getWidth(), workingImage.getHeight());
-    }
-
     //MARK: Change picture hue - example
     public BufferedImage changeHue() {
-        logger.log("Preparing for hue changing...");
+        logger.log(Level.INFO, "Preparing for hue changing...");
         int r = rgbWeights.redWeight;
         int g = rgbWeights.greenWeight;
         int b = rgbWeights.blueWeight;
         int max = rgbWeights.maxWeight;
 
-        BufferedImage ans = newEmptyInputSizedImage();
+        int[] ans = new int[inWidth * inHeight];
 
-        forEach((y, x) -> {
-            Color c = new Color(workingImage.getRGB(x, y));
-            int red = r * c.getRed() / max;
-            int green = g * c.getGreen() / max;
-            int blue = b * c.getBlue() / max;
-            Color color = new Color(red, green, blue);
-            ans.setRGB(x, y, color.getRGB());
-        });
-        logger.log("Changing hue done!");
+        parallelForEachRows(inHeight, (fromY, toY) -> PixelKernels.changeHue(workingPixels, fromY * inWidth, toY * inWidth,
+                r, g, b, max, ans));
+        logger.log(Level.INFO, "Changing hue done!");
 
-        return ans;
+        return newImage(ans, inWidth, inHeight);
     }
 
 
     //MARK: Unimplemented methods
     public BufferedImage greyscale() {
-        logger.log("Preparing for greyscale changing...");
+        logger.log(Level.INFO, "Preparing for greyscale changing...");
+
+        // The shared levels are the calculated ones unless the output type changes them
+        int[] greyLevels = isExactRGBType(outputImageType) ? sharedGreyscaleLevels() : calculateGreyLevels();
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.GREYSCALE);
+        int[] ans = new int[inWidth * inHeight];
+        PixelKernels.greyPixels(greyLevels, 0, ans.length, ans);
+        timer.stop();
+        logger.log(Level.INFO, "Changing greyscale done!");
 
+        return newImage(ans, inWidth, inHeight);
+    }
+
+    /**
+     * Calculates the grey level of every pixel, as it would be read back
+     * (from the red channel) of the image returned by greyscale().
+     * @return - A new array of grey levels between 0 and 255, row by row.
+     */
+    public int[] greyscaleLevels() {
+        return sharedGreyscaleLevels().clone();
+    }
+
+    /**
+     * @return - The grey levels of greyscaleLevels(), calculated once and shared with
+     * the other processors of the image through the plane cache, so they must not be modified.
+     */
+    protected final int[] sharedGreyscaleLevels() {
+        int[] levels = greyLevels;
+        if (levels == null) {
+            levels = derivedPlane(Plane.LUMA, this::calculateGreyscaleLevels);
+            greyLevels = levels;
+        }
+        return levels;
+    }
+
+    private int[] calculateGreyscaleLevels() {
+        if (isExactRGBType(outputImageType)) {
+            return calculateGreyLevels();
+        }
+
+        // The output type may change the grey levels, so they are read back from it
+        int[] greyLevels = readPixels(greyscale());
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.GREYSCALE);
+        for (int i = 0; i < greyLevels.length; i++) {
+            greyLevels[i] = red(greyLevels[i]);
+        }
+        timer.stop();
+        return greyLevels;
+    }
+
+    private int[] calculateGreyLevels() {
         int r = rgbWeights.redWeight;
         int g = rgbWeights.greenWeight;
         int b = rgbWeights.blueWeight;
 
-        BufferedImage ans = newEmptyInputSizedImage();
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.GREYSCALE);
+        int[] greyLevels = new int[inWidth * inHeight];
 
-        forEach((y, x) -> {
-            Color c = new Color(workingImage.getRGB(x, y));
-            int weightedRed = r * c.getRed();
-            int weightedGreen = g * c.getGreen();
-            int weightedBlue = b * c.getBlue();
-            int greyColor = (weightedRed + weightedGreen + weightedBlue) / (r + g + b);
-            Color resultColor = new Color(greyColor, greyColor, greyColor);
-            ans.setRGB(x, y, resultColor.getRGB());
-        });
-        logger.log("Changing greyscale done!");
+        parallelForEachRows(inHeight, (fromY, toY) -> PixelKernels.greyLevels(workingPixels, fromY * inWidth, toY * inWidth,
+                r, g, b, greyLevels));
+        timer.stop();
 
-        return ans;
+        return greyLevels;
     }
 
     public BufferedImage gradientMagnitude() {
-        logger.log("Preparing for gradient magnitude changing...");
-        BufferedImage greyScaledImage = greyscale();
-        BufferedImage ans = greyscale();
-
-        forEach((y, x) -> {
-            Color currentPixel = new Color(greyScaledImage.getRGB(x, y));
-            Color nextHorizontalPixel = new Color(greyScaledImage
-                    .getRGB(x == (greyScaledImage.getWidth() - 1) ? x - 1 : x + 1, y));
+        logger.log(Level.INFO, "Preparing for gradient magnitude changing...");
+        int[] ans = derivedPlane(Plane.GRADIENT, this::calculateGradientMagnitude);
+        logger.log(Level.INFO, "gradient magnitude done!");
 
-            Color nextVerticalPixel = new Color(greyScaledImage
-                    .getRGB(x, y == (greyScaledImage.getHeight() - 1) ? y - 1 : y + 1));
+        return newImage(ans, inWidth, inHeight);
+    }
 
-            int gradientMagnitude = getGradientMagnitude(currentPixel, nextHorizontalPixel, nextVerticalPixel);
-            Color resultColor = new Color(gradientMagnitude, gradientMagnitude, gradientMagnitude);
+    private int[] calculateGradientMagnitude() {
+        int[] greyLevels = sharedGreyscaleLevels();
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.ENERGY);
+        int[] ans = new int[inWidth * inHeight];
 
-            ans.setRGB(x, y, resultColor.getRGB());
-        });
-        logger.log("gradient magnitude done!");
+        parallelForEachRows(inHeight, (fromY, toY) -> PixelKernels.gradientRows(greyLevels, inWidth, inHeight, fromY, toY, ans));
+        timer.stop();
 
         return ans;
     }
 
     public int getGradientMagnitude(Color currentPixel, Color nextHorizontalPixel, Color nextVerticalPixel) {
-        int currGreyColor = currentPixel.getRed(); // RGB values are equal on grey
-        int horizontalGreyColor = nextHorizontalPixel.getRed();
-        int verticalGreyColor = nextVerticalPixel.getRed();
+        // RGB values are equal on grey
+        return getGradientMagnitude(currentPixel.getRed(), nextHorizontalPixel.getRed(), nextVerticalPixel.getRed());
+    }
 
-        int dxSquare = (int) Math.pow(currGreyColor - horizontalGreyColor, 2);
-        int dySquare = (int) Math.pow(currGreyColor - verticalGreyColor, 2);
+    public int getGradientMagnitude(int currGreyColor, int horizontalGreyColor, int verticalGreyColor) {
+        int dx = currGreyColor - horizontalGreyColor;
+        int dy = currGreyColor - verticalGreyColor;
 
-        return (int) Math.sqrt((dxSquare + dySquare) / 2);
+        return (int) Math.sqrt((dx * dx + dy * dy) / 2);
     }
 
 
     public BufferedImage nearestNeighbor() {
-        logger.log("Preparing for nearest neighbor resize...");
-        setForEachOutputParameters();
-        BufferedImage ans = newEmptyOutputSizedImage();
+        logger.log(Level.INFO, "Preparing for nearest neighbor resize...");
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.RESAMPLE);
+        MipmapPyramid.Level source = resamplingSource();
+        int[] ans = Resampler.nearestNeighbor(this, source.pixels, source.width, source.height, outWidth, outHeight);
+        timer.stop();
+        logger.log(Level.INFO, "nearest neighbor resize done!");
+
+        return newImage(ans, outWidth, outHeight);
+    }
 
-        forEach((y, x) -> {
-            int sourceX = (int) Math.round(((double) x) / ans.getWidth() * workingImage.getWidth());
-            int sourceY = (int) Math.round(((double) y) / ans.getHeight() * workingImage.getHeight());
+    public BufferedImage bilinear() {
+        logger.log(Level.INFO, "Preparing for bilinear resize...");
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.RESAMPLE);
+        MipmapPyramid.Level source = resamplingSource();
+        int[] ans = Resampler.bilinear(this, source.pixels, source.width, source.height, outWidth, outHeight);
+        timer.stop();
+        logger.log(Level.INFO, "bilinear resize done!");
+
+        return newImage(ans, outWidth, outHeight);
+    }
 
-            // Handle boundaries case
-            sourceX = Math.min(sourceX, workingImage.getWidth() - 1);
-            sourceY = Math.min(sourceY, workingImage.getHeight() - 1);
+    public BufferedImage bicubic() {
+        return convolve(Resampler.Filter.BICUBIC, "bicubic");
+    }
 
-            int nearestNeighborRGB = workingImage.getRGB(sourceX, sourceY);
-            ans.setRGB(x, y, nearestNeighborRGB);
+    public BufferedImage lanczos() {
+        return convolve(Resampler.Filter.LANCZOS, "lanczos");
+    }
 
-        });
-        logger.log("nearest neighbor resize done!");
+    private BufferedImage convolve(Resampler.Filter filter, String name) {
+        logger.log(Level.INFO, () -> "Preparing for " + name + " resize...");
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.RESAMPLE);
+        MipmapPyramid.Level source = resamplingSource();
+        int[] ans = Resampler.convolve(this, source.pixels, source.width, source.height, outWidth, outHeight, filter);
+        timer.stop();
+        logger.log(Level.INFO, () -> name + " resize done!");
 
-        return ans;
+        return newImage(ans, outWidth, outHeight);
     }
 
-    public BufferedImage bilinear() {
-        logger.log("Preparing for bilinear resize...");
-        setForEachOutputParameters();
-        BufferedImage ans = newEmptyOutputSizedImage();
+    /**
+     * Shares the planes derived from the working image (its grey levels and
+     * gradient magnitude) with the other processors of the same image.
+     * @param planeCache - The cache of the derived planes, or null to calculate them.
+     */
+    public void setPlaneCache(PlaneCache planeCache) {
+        this.planeCache = planeCache;
+        contentHashed = false;
+    }
 
-        forEach((y, x) -> {
-            double interpolatedX = ((double) x) / ans.getWidth() * workingImage.getWidth();
-            double interpolatedY = ((double) y) / ans.getHeight() * workingImage.getHeight();
+    /**
+     * @param contentHash - The content hash of the working image, when the caller
+     *                    knows it already (see contentHash).
+     */
+    public void setPlaneCache(PlaneCache planeCache, long contentHash) {
+        this.planeCache = planeCache;
+        this.contentHash = contentHash;
+        contentHashed = true;
+    }
+
+    /**
+     * @return - The plane out of the plane cache, or the calculated plane without a cache.
+     */
+    private int[] derivedPlane(Plane plane, Supplier<int[]> calculation) {
+        if (planeCache == null)
+            return calculation.get();
+
+        if (!contentHashed) {
+            contentHash = contentHash();
+            contentHashed = true;
+        }
+        return planeCache.get(contentHash, plane, outputImageType, rgbWeights, calculation);
+    }
+
+    /**
+     * Lets the resizes start from the mipmap level nearest to the output size
+     * (see MipmapPyramid.levelFor), instead of sampling a few pixels of the working
+     * image for every output pixel when it is downscaled by more than 2x.
+     * @param mipmaps - The pyramid of the working image, or null to resample the working image.
+     */
+    public void setMipmaps(MipmapPyramid mipmaps) {
+        if (mipmaps != null && (mipmaps.width != inWidth || mipmaps.height != inHeight))
+            throw new IllegalArgumentException("The mipmap pyramid is not of the working image size");
+
+        this.mipmaps = mipmaps;
+    }
 
-            // Find the four nearest points
-            int sourceXLeft = (int) Math.floor(interpolatedX);
-            int sourceXRight = (int) Math.ceil(interpolatedX);
-            int sourceYBottom = (int) Math.floor(interpolatedY);
-            int sourceYTop = (int) Math.ceil(interpolatedY);
+    /**
+     * @return - The pixels which the resizes resample, the mipmap level for the output
+     * size or the working image.
+     */
+    private MipmapPyramid.Level resamplingSource() {
+        MipmapPyramid.Level level = mipmaps == null ? null : mipmaps.levelFor(outWidth, outHeight);
+        if (level == null)
+            return new MipmapPyramid.Level(workingPixels, inWidth, inHeight);
+
+        logger.log(Level.DEBUG, () -> "resampling the " + level.width + "x" + level.height + " mipmap level");
+        return level;
+    }
 
-            // Handle boundaries case
-            sourceXRight = Math.min(sourceXRight, workingImage.getWidth() - 1);
-            sourceYTop = Math.min(sourceYTop, workingImage.getHeight() - 1);
+    //MARK: Resampling kernels
+    // The source may be a band of rows of the source image, which starts at row
+    // sourceFromY and holds every source row that the output pixel reads.
 
-            // value of the four nearest points
-            Color cLeftTop = new Color(workingImage.getRGB(sourceXLeft, sourceYTop));
-            Color cRightTop = new Color(workingImage.getRGB(sourceXRight, sourceYTop));
-            Color cLeftBottom = new Color(workingImage.getRGB(sourceXLeft, sourceYBottom));
-            Color cRightBottom = new Color(workingImage.getRGB(sourceXRight, sourceYBottom));
+    /**
+     * @return - The source row of an output row of the nearest neighbor resize.
+     */
+    static int nearestNeighborSourceY(int y, int inHeight, int outHeight) {
+        int sourceY = (int) Math.round(((double) y) / outHeight * inHeight);
 
-            double xAxisTValue = sourceXRight - interpolatedX;
-            double yAxisTValue = sourceYTop - interpolatedY;
+        // Handle boundaries case
+        return Math.min(sourceY, inHeight - 1);
+    }
 
-            // interpolations on the X-axis
-            int vTopRed = (int) (xAxisTValue * cLeftTop.getRed() + (1 - xAxisTValue) * cRightTop.getRed());
-            int vTopGreen = (int) (xAxisTValue * cLeftTop.getGreen() + (1 - xAxisTValue) * cRightTop.getGreen());
-            int vTopBlue = (int) (xAxisTValue * cLeftTop.getBlue() + (1 - xAxisTValue) * cRightTop.getBlue());
+    static int nearestNeighborPixel(int[] source, int sourceFromY, int inWidth, int inHeight,
+                                    int outWidth, int outHeight, int y, int x) {
+        int sourceX = (int) Math.round(((double) x) / outWidth * inWidth);
+        int sourceY = nearestNeighborSourceY(y, inHeight, outHeight);
 
-            int vBottomRed = (int) (xAxisTValue * cLeftBottom.getRed() + (1 - xAxisTValue) * cRightBottom.getRed());
-            int vBottomGreen = (int) (xAxisTValue * cLeftBottom.getGreen() + (1 - xAxisTValue) * cRightBottom.getGreen());
-            int vBottomBlue = (int) (xAxisTValue * cLeftBottom.getBlue() + (1 - xAxisTValue) * cRightBottom.getBlue());
+        // Handle boundaries case
+        sourceX = Math.min(sourceX, inWidth - 1);
 
-            // interpolation between X-axis results on the Y-axis
-            int vFinalRed = (int) (yAxisTValue * vBottomRed + (1 - yAxisTValue) * vTopRed);
-            int vFinalGreen = (int) (yAxisTValue * vBottomGreen + (1 - yAxisTValue) * vTopGreen);
-            int vFinalBlue = (int) (yAxisTValue * vBottomBlue + (1 - yAxisTValue) * vTopBlue);
+        return source[(sourceY - sourceFromY) * inWidth + sourceX];
+    }
 
-            Color resultColor = new Color(vFinalRed, vFinalGreen, vFinalBlue);
-            ans.setRGB(x, y, resultColor.getRGB());
-        });
+    /**
+     * @return - The upper of the two source rows of an output row of the bilinear resize.
+     */
+    static int bilinearSourceFromY(int y, int inHeight, int outHeight) {
+        return (int) Math.floor(((double) y) / outHeight * inHeight);
+    }
 
-        logger.log("bilinear resize done!");
+    /**
+     * @return - The lower of the two source rows of an output row of the bilinear resize.
+     */
+    static int bilinearSourceToY(int y, int inHeight, int outHeight) {
+        int sourceYTop = (int) Math.ceil(((double) y) / outHeight * inHeight);
 
-        return ans;
+        // Handle boundaries case
+        return Math.min(sourceYTop, inHeight - 1);
+    }
+
+    static int bilinearPixel(int[] source, int sourceFromY, int inWidth, int inHeight,
+                             int outWidth, int outHeight, int y, int x) {
+        double interpolatedX = ((double) x) / outWidth * inWidth;
+        double interpolatedY = ((double) y) / outHeight * inHeight;
+
+        // Find the four nearest points
+        int sourceXLeft = (int) Math.floor(interpolatedX);
+        int sourceXRight = (int) Math.ceil(interpolatedX);
+        int sourceYBottom = bilinearSourceFromY(y, inHeight, outHeight);
+        int sourceYTop = bilinearSourceToY(y, inHeight, outHeight);
+
+        // Handle boundaries case
+        sourceXRight = Math.min(sourceXRight, inWidth - 1);
+
+        // value of the four nearest points
+        int topOffset = (sourceYTop - sourceFromY) * inWidth;
+        int bottomOffset = (sourceYBottom - sourceFromY) * inWidth;
+        int cLeftTop = source[topOffset + sourceXLeft];
+        int cRightTop = source[topOffset + sourceXRight];
+        int cLeftBottom = source[bottomOffset + sourceXLeft];
+        int cRightBottom = source[bottomOffset + sourceXRight];
+
+        double xAxisTValue = sourceXRight - interpolatedX;
+        double yAxisTValue = sourceYTop - interpolatedY;
+
+        // interpolations on the X-axis
+        int vTopRed = (int) (xAxisTValue * red(cLeftTop) + (1 - xAxisTValue) * red(cRightTop));
+        int vTopGreen = (int) (xAxisTValue * green(cLeftTop) + (1 - xAxisTValue) * green(cRightTop));
+        int vTopBlue = (int) (xAxisTValue * blue(cLeftTop) + (1 - xAxisTValue) * blue(cRightTop));
+
+        int vBottomRed = (int) (xAxisTValue * red(cLeftBottom) + (1 - xAxisTValue) * red(cRightBottom));
+        int vBottomGreen = (int) (xAxisTValue * green(cLeftBottom) + (1 - xAxisTValue) * green(cRightBottom));
+        int vBottomBlue = (int) (xAxisTValue * blue(cLeftBottom) + (1 - xAxisTValue) * blue(cRightBottom));
+
+        // interpolation between X-axis results on the Y-axis
+        int vFinalRed = (int) (yAxisTValue * vBottomRed + (1 - yAxisTValue) * vTopRed);
+        int vFinalGreen = (int) (yAxisTValue * vBottomGreen + (1 - yAxisTValue) * vTopGreen);
+        int vFinalBlue = (int) (yAxisTValue * vBottomBlue + (1 - yAxisTValue) * vTopBlue);
+
+        return rgb(vFinalRed, vFinalGreen, vFinalBlue);
     }
 
     //MARK: Utilities
@@ -212,16 +404,215 @@ public class ImageProcessor extends FunctioalForEachLoops {
     }
 
     public final BufferedImage newEmptyImage(int width, int height) {
-        return new BufferedImage(width, height, workingImageType);
+        return new BufferedImage(width, height, outputImageType);
+    }
+
+    /**
+     * @param pixels - Packed ARGB values, row by row.
+     * @return - A new image of the working image type holding the pixels.
+     */
+    public final BufferedImage newImage(int[] pixels, int width, int height) {
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.GATHER);
+        BufferedImage output = newEmptyImage(width, height);
+        writePixels(output, pixels, width);
+        timer.stop();
+        return output;
     }
 
     public final BufferedImage duplicateWorkingImage() {
-        BufferedImage output = newEmptyInputSizedImage();
+        return newImage(workingPixels, inWidth, inHeight);
+    }
 
-        forEach((y, x) ->
-                output.setRGB(x, y, workingImage.getRGB(x, y))
-        );
+    /**
+     * @return - A 64 bit FNV-1a hash (over 32 bit words) of the working image size and pixels,
+     * which identifies the image content regardless of its type.
+     */
+    public final long contentHash() {
+        return contentHash(workingPixels, inWidth, inHeight);
+    }
 
-        return output;
+    /**
+     * @return - The content hash of an image, the same as contentHash() of its processors.
+     */
+    public static long contentHash(BufferedImage img) {
+        return contentHash(readPixels(img), img.getWidth(), img.getHeight());
+    }
+
+    private static long contentHash(int[] pixels, int width, int height) {
+        long hash = 0xCBF29CE484222325L;
+        hash = (hash ^ width) * 0x100000001B3L;
+        hash = (hash ^ height) * 0x100000001B3L;
+        for (int pixel : pixels) {
+            hash = (hash ^ pixel) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    //MARK: Packed pixels
+    public static int red(int rgb) {
+        return (rgb >> 16) & 0xFF;
+    }
+
+    public static int green(int rgb) {
+        return (rgb >> 8) & 0xFF;
+    }
+
+    public static int blue(int rgb) {
+        return rgb & 0xFF;
+    }
+
+    public static int rgb(int red, int green, int blue) {
+        return 0xFF000000 | (red << 16) | (green << 8) | blue;
+    }
+
+    /**
+     * Reads all the pixels of an image as packed non premultiplied ARGB values,
+     * row by row (the format of BufferedImage.getRGB). Packed int and byte BGR
+     * rasters are read directly from their data buffers, other image types are
+     * converted once through their color model.
+     * @return - A new array of width * height pixels.
+     */
+    public static int[] readPixels(BufferedImage img) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        int[] pixels = new int[width * height];
+
+        switch (isCompactRaster(img) ? img.getType() : BufferedImage.TYPE_CUSTOM) {
+        case BufferedImage.TYPE_INT_ARGB:
+            System.arraycopy(intData(img), 0, pixels, 0, pixels.length);
+            break;
+
+        case BufferedImage.TYPE_INT_RGB: {
+            int[] data = intData(img);
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = 0xFF000000 | data[i];
+            }
+            break;
+        }
+
+        case BufferedImage.TYPE_3BYTE_BGR: {
+            byte[] data = byteData(img);
+            for (int i = 0, j = 0; i < pixels.length; i++, j += 3) {
+                pixels[i] = rgb(data[j + 2] & 0xFF, data[j + 1] & 0xFF, data[j] & 0xFF);
+            }
+            break;
+        }
+
+        case BufferedImage.TYPE_4BYTE_ABGR: {
+            byte[] data = byteData(img);
+            for (int i = 0, j = 0; i < pixels.length; i++, j += 4) {
+                pixels[i] = (data[j] & 0xFF) << 24 | (data[j + 3] & 0xFF) << 16
+                        | (data[j + 2] & 0xFF) << 8 | (data[j + 1] & 0xFF);
+            }
+            break;
+        }
+
+        default:
+            img.getRGB(0, 0, width, height, pixels, 0, width);
+            break;
+        }
+
+        return pixels;
+    }
+
+    /**
+     * Writes packed ARGB values to all the pixels of an image, the same as
+     * BufferedImage.setRGB would, directly into the data buffer when possible.
+     * @param scanSize - The row stride of the pixels array.
+     */
+    public static void writePixels(BufferedImage img, int[] pixels, int scanSize) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+
+        switch (isCompactRaster(img) ? img.getType() : BufferedImage.TYPE_CUSTOM) {
+        case BufferedImage.TYPE_INT_ARGB: {
+            int[] data = intData(img);
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(pixels, y * scanSize, data, y * width, width);
+            }
+            break;
+        }
+
+        case BufferedImage.TYPE_INT_RGB: {
+            int[] data = intData(img);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0, i = y * scanSize, j = y * width; x < width; x++) {
+                    data[j++] = pixels[i++] & 0xFFFFFF;
+                }
+            }
+            break;
+        }
+
+        case BufferedImage.TYPE_3BYTE_BGR: {
+            byte[] data = byteData(img);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0, i = y * scanSize, j = 3 * y * width; x < width; x++, i++, j += 3) {
+                    data[j] = (byte) pixels[i];
+                    data[j + 1] = (byte) (pixels[i] >> 8);
+                    data[j + 2] = (byte) (pixels[i] >> 16);
+                }
+            }
+            break;
+        }
+
+        case BufferedImage.TYPE_4BYTE_ABGR: {
+            byte[] data = byteData(img);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0, i = y * scanSize, j = 4 * y * width; x < width; x++, i++, j += 4) {
+                    data[j] = (byte) (pixels[i] >> 24);
+                    data[j + 1] = (byte) pixels[i];
+                    data[j + 2] = (byte) (pixels[i] >> 8);
+                    data[j + 3] = (byte) (pixels[i] >> 16);
+                }
+            }
+            break;
+        }
+
+        default:
+            img.setRGB(0, 0, width, height, pixels, 0, scanSize);
+            break;
+        }
+    }
+
+    /**
+     * @return - true if the image pixels are in a single bank, row after row,
+     * without padding, as created by the BufferedImage constructor.
+     */
+    private static boolean isCompactRaster(BufferedImage img) {
+        WritableRaster raster = img.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+                || dataBuffer.getNumBanks() != 1 || dataBuffer.getOffset() != 0)
+            return false;
+
+        if (sampleModel instanceof SinglePixelPackedSampleModel)
+            return ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride() == raster.getWidth();
+
+        if (sampleModel instanceof ComponentSampleModel) {
+            ComponentSampleModel componentSampleModel = (ComponentSampleModel) sampleModel;
+            return componentSampleModel.getScanlineStride()
+                    == raster.getWidth() * componentSampleModel.getPixelStride();
+        }
+
+        return false;
+    }
+
+    /**
+     * @return - true if writing a packed RGB value to an image of the given type
+     * and reading it back gives the same value.
+     */
+    private static boolean isExactRGBType(int imageType) {
+        return imageType == BufferedImage.TYPE_INT_RGB | imageType == BufferedImage.TYPE_INT_ARGB
+                | imageType == BufferedImage.TYPE_INT_BGR | imageType == BufferedImage.TYPE_3BYTE_BGR
+                | imageType == BufferedImage.TYPE_4BYTE_ABGR;
+    }
+
+    private static int[] intData(BufferedImage img) {
+        return ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+    }
+
+    private static byte[] byteData(BufferedImage img) {
+        return ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
     }
 }
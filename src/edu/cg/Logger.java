@@ -1,9 +1,69 @@
 package edu.cg;
 
+import java.util.function.Supplier;
+
 public interface Logger {
+	//MARK: The severity of the messages, from the most detailed one
+	public enum Level {
+		DEBUG,
+		INFO,
+		WARN,
+		ERROR
+	}
+	
+	//MARK: A logger which drops every message, without formatting it
+	public static final Logger NONE = new Logger() {
+		@Override
+		public void log(String s) {
+		}
+		
+		@Override
+		public boolean isEnabled(Level level) {
+			return false;
+		}
+	};
+	
 	public void log(String s);
 	
 	public default void log(Object obj) {
 		log(obj == null ? "null" : obj.toString());
 	}
+	
+	/**
+	 * Loggers which drop some levels override it, so the messages of
+	 * those levels are never formatted.
+	 */
+	public default boolean isEnabled(Level level) {
+		return true;
+	}
+	
+	public default void log(Level level, String s) {
+		if(isEnabled(level))
+			log(s);
+	}
+	
+	/**
+	 * @param message - Formats the message, only if the level is enabled.
+	 */
+	public default void log(Level level, Supplier<String> message) {
+		if(isEnabled(level))
+			log(message.get());
+	}
+	
+	/**
+	 * @return - A logger of the messages of the sink which are at least of the given level.
+	 */
+	public static Logger atLevel(Logger sink, Level minLevel) {
+		return new Logger() {
+			@Override
+			public void log(String s) {
+				sink.log(s);
+			}
+			
+			@Override
+			public boolean isEnabled(Level level) {
+				return level.compareTo(minLevel) >= 0 && sink.isEnabled(level);
+			}
+		};
+	}
 }
@@ -1,12 +1,20 @@
 package edu.cg;
+import edu.cg.batch.BatchMain;
 import edu.cg.menu.MenuWindow;
 
 public class Main {
 	
 	/**
-	 * Launch the application.
+	 * Launch the application, or process a batch of images headless
+	 * when there are arguments (see BatchMain).
 	 */
 	public static void main(String[] args) {
+		PhaseMetrics.registerMBean();
+		if(args.length > 0) {
+			BatchMain.main(args);
+			return;
+		}
+		
 		MenuWindow mw = new MenuWindow();
 		mw.setVisible(true);
 	}
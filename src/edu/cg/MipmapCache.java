@@ -0,0 +1,37 @@
+package edu.cg;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import edu.cg.Logger.Level;
+
+/**
+ * A bounded cache of the mipmap pyramids of the working images, keyed by their
+ * content hash and size (see BoundedLruCache), so repeated downscales of the same
+ * image start from its cached levels.
+ */
+public class MipmapCache extends BoundedLruCache<List<Object>, MipmapPyramid> {
+
+    //MARK: Constructor
+    /**
+     * @param maxBytes - The budget of the cached pyramids pixel data.
+     */
+    public MipmapCache(Logger logger, long maxBytes) {
+        super(logger, "mipmap pyramid", Level.DEBUG, maxBytes, MipmapPyramid::getBytes);
+    }
+
+    //MARK: Methods
+    /**
+     * @param contentHash - The content hash of the image (see ImageProcessor.contentHash).
+     * @return - The cached pyramid of the image, or its new pyramid, which is cached
+     * unless it is larger than the whole budget.
+     */
+    public MipmapPyramid get(long contentHash, BufferedImage image) {
+        return get(List.of(contentHash, image.getWidth(), image.getHeight()), () -> {
+            MipmapPyramid pyramid = MipmapPyramid.of(image);
+            logger.log(Level.DEBUG, () -> "built " + pyramid.levels() + " mipmap levels of a "
+                    + pyramid.width + "x" + pyramid.height + " image");
+            return pyramid;
+        });
+    }
+}
@@ -0,0 +1,140 @@
+package edu.cg;
+
+import java.awt.image.BufferedImage;
+
+import edu.cg.PhaseMetrics.Phase;
+
+/**
+ * The mipmap pyramid of an image, for large downscales. Every level is a 2x box
+ * reduction of the level before it (the image itself), down to a single pixel,
+ * and its pixels average the channels of a 2x2 block, alpha included. An odd last
+ * row or column is averaged with itself. The levels are built once and never
+ * modified, so a pyramid can be shared by several processors and threads.
+ */
+public class MipmapPyramid {
+
+    //MARK: A reduction of the image
+    public static final class Level {
+        public final int width;
+        public final int height;
+        // Packed ARGB values, row by row
+        final int[] pixels;
+
+        Level(int[] pixels, int width, int height) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    //MARK: Fields
+    public final int width;
+    public final int height;
+    // levels[i] is reduced 2^(i + 1) times, the image itself is not kept
+    private final Level[] levels;
+    private final long bytes;
+
+    //MARK: Constructors
+    /**
+     * Builds the levels of an image of packed ARGB pixels, row by row.
+     */
+    public MipmapPyramid(int[] pixels, int width, int height) {
+        if (pixels.length != width * height)
+            throw new IllegalArgumentException("The pixels do not match the image size");
+
+        this.width = width;
+        this.height = height;
+        int count = 0;
+        for (int w = width, h = height; w > 1 || h > 1; w = half(w), h = half(h)) {
+            count++;
+        }
+
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.RESAMPLE);
+        levels = new Level[count];
+        Level level = new Level(pixels, width, height);
+        long levelBytes = 0;
+        for (int i = 0; i < count; i++) {
+            level = reduce(level);
+            levels[i] = level;
+            levelBytes += 4L * level.pixels.length;
+        }
+        bytes = levelBytes;
+        timer.stop();
+    }
+
+    public static MipmapPyramid of(BufferedImage image) {
+        return new MipmapPyramid(ImageProcessor.readPixels(image), image.getWidth(), image.getHeight());
+    }
+
+    //MARK: Methods
+    /**
+     * @return - The smallest level which is at least as large as the output in both
+     * dimensions, so the interpolators finish the resize from at most 2x of its size.
+     * Null when no level is that large, and the image itself should be resampled.
+     */
+    public Level levelFor(int outWidth, int outHeight) {
+        Level ans = null;
+        for (Level level : levels) {
+            if (level.width < outWidth || level.height < outHeight)
+                break;
+
+            ans = level;
+        }
+        return ans;
+    }
+
+    /**
+     * @return - Whether an image of the given size has a pyramid level for the output,
+     * that is the output is at most half of the image in both dimensions.
+     */
+    public static boolean reduces(int width, int height, int outWidth, int outHeight) {
+        return (width > 1 || height > 1) && half(width) >= outWidth && half(height) >= outHeight;
+    }
+
+    public int levels() {
+        return levels.length;
+    }
+
+    /**
+     * @return - The size of the levels pixels, in bytes.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    //MARK: Utilities
+    private static int half(int size) {
+        return (size + 1) / 2;
+    }
+
+    private static Level reduce(Level level) {
+        int width = half(level.width);
+        int height = half(level.height);
+        int lastX = level.width - 1;
+        int lastY = level.height - 1;
+        int[] source = level.pixels;
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int topOffset = 2 * y * level.width;
+            int bottomOffset = Math.min(2 * y + 1, lastY) * level.width;
+            for (int x = 0; x < width; x++) {
+                int left = 2 * x;
+                int right = Math.min(left + 1, lastX);
+                pixels[y * width + x] = average(source[topOffset + left], source[topOffset + right],
+                        source[bottomOffset + left], source[bottomOffset + right]);
+            }
+        }
+        return new Level(pixels, width, height);
+    }
+
+    /**
+     * @return - The rounded average of every channel of four packed pixels. Two channels
+     * are summed at once, in the 16 bit lanes of a mask, where four channels can not overflow.
+     */
+    private static int average(int a, int b, int c, int d) {
+        int redBlue = (a & 0x00FF00FF) + (b & 0x00FF00FF) + (c & 0x00FF00FF) + (d & 0x00FF00FF) + 0x00020002;
+        int alphaGreen = ((a >>> 8) & 0x00FF00FF) + ((b >>> 8) & 0x00FF00FF)
+                + ((c >>> 8) & 0x00FF00FF) + ((d >>> 8) & 0x00FF00FF) + 0x00020002;
+        return (((alphaGreen >>> 2) & 0x00FF00FF) << 8) | ((redBlue >>> 2) & 0x00FF00FF);
+    }
+}
@@ -0,0 +1,182 @@
+package edu.cg;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Wall time and allocated bytes of the processing phases, summed over all the
+ * processors of the application. A phase is timed by the thread which starts it,
+ * so the bytes allocated by the pool threads of a parallel loop are not included.
+ * The forward energy of the seam carving is part of its DP phase.
+ */
+public final class PhaseMetrics implements PhaseMetricsMXBean {
+
+    //MARK: The measured phases
+    public enum Phase {
+        GREYSCALE,
+        ENERGY,
+        DP,
+        BACKTRACK,
+        COMPACTION,
+        GATHER,
+        RESAMPLE
+    }
+
+    //MARK: A started phase, recorded once it is stopped
+    public static final class Timer {
+        private final PhaseMetrics metrics;
+        private final Phase phase;
+        private final long startNanos;
+        private final long startBytes;
+
+        private Timer(PhaseMetrics metrics, Phase phase) {
+            this.metrics = metrics;
+            this.phase = phase;
+            startNanos = metrics == null ? 0 : System.nanoTime();
+            startBytes = metrics == null ? 0 : metrics.allocatedBytes();
+        }
+
+        public void stop() {
+            if (metrics != null) {
+                metrics.record(phase, System.nanoTime() - startNanos, metrics.allocatedBytes() - startBytes);
+            }
+        }
+    }
+
+    private static final PhaseMetrics GLOBAL = new PhaseMetrics();
+    private static final Timer DISABLED = new Timer(null, null);
+    private static final String OBJECT_NAME = "edu.cg:type=PhaseMetrics";
+
+    //MARK: Fields
+    private final LongAdder[] counts = newAdders();
+    private final LongAdder[] wallNanos = newAdders();
+    private final LongAdder[] allocatedBytes = newAdders();
+    private final com.sun.management.ThreadMXBean threads;
+    private volatile boolean enabled = true;
+
+    //MARK: Constructor
+    private PhaseMetrics() {
+        java.lang.management.ThreadMXBean threadsBean = ManagementFactory.getThreadMXBean();
+        threads = threadsBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadsBean).isThreadAllocatedMemorySupported()
+                ? (com.sun.management.ThreadMXBean) threadsBean : null;
+    }
+
+    //MARK: Methods
+    public static PhaseMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Starts timing a phase on the current thread.
+     */
+    public static Timer time(Phase phase) {
+        return GLOBAL.enabled ? new Timer(GLOBAL, phase) : DISABLED;
+    }
+
+    /**
+     * Registers the global metrics on the platform MBean server, once.
+     */
+    public static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(GLOBAL, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Registered before
+        } catch (JMException e) {
+            throw new RuntimeException("Can not register the phase metrics", e);
+        }
+    }
+
+    public long count(Phase phase) {
+        return counts[phase.ordinal()].sum();
+    }
+
+    public long wallNanos(Phase phase) {
+        return wallNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * @return - The bytes allocated by the timing threads, 0 if the JVM does not measure them.
+     */
+    public long allocatedBytes(Phase phase) {
+        return allocatedBytes[phase.ordinal()].sum();
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        return toMap(counts);
+    }
+
+    @Override
+    public Map<String, Long> getWallNanos() {
+        return toMap(wallNanos);
+    }
+
+    @Override
+    public Map<String, Long> getAllocatedBytes() {
+        return toMap(allocatedBytes);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void reset() {
+        for (Phase phase : Phase.values()) {
+            counts[phase.ordinal()].reset();
+            wallNanos[phase.ordinal()].reset();
+            allocatedBytes[phase.ordinal()].reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Phase metrics:");
+        for (Phase phase : Phase.values()) {
+            if (count(phase) > 0) {
+                sb.append(String.format("%n    %-10s %8d times %10.1f ms %10.1f MB", phase.toString().toLowerCase(),
+                        count(phase), wallNanos(phase) / 1e6, allocatedBytes(phase) / 1048576.0));
+            }
+        }
+        return sb.toString();
+    }
+
+    private void record(Phase phase, long nanos, long bytes) {
+        counts[phase.ordinal()].increment();
+        wallNanos[phase.ordinal()].add(nanos);
+        allocatedBytes[phase.ordinal()].add(bytes);
+    }
+
+    private long allocatedBytes() {
+        return threads == null ? 0 : Math.max(0, threads.getThreadAllocatedBytes(Thread.currentThread().getId()));
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[Phase.values().length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static Map<String, Long> toMap(LongAdder[] adders) {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            map.put(phase.toString(), adders[phase.ordinal()].sum());
+        }
+        return map;
+    }
+}
@@ -0,0 +1,20 @@
+package edu.cg;
+
+import java.util.Map;
+
+/**
+ * The JMX view of PhaseMetrics, every map is keyed by the phase name.
+ */
+public interface PhaseMetricsMXBean {
+    Map<String, Long> getCounts();
+
+    Map<String, Long> getWallNanos();
+
+    Map<String, Long> getAllocatedBytes();
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    void reset();
+}
@@ -0,0 +1,260 @@
+package edu.cg;
+
+/**
+ * The per pixel arithmetic of the point and gradient operations and of the seams
+ * cost rows. Every kernel has a reference implementation, which is a direct
+ * translation of the formula, and a fast implementation which gives the same
+ * results. The fast kernels are straight loops over plain arrays, without
+ * boundary branches in their inner loops and with the divisions by the RGB
+ * weights replaced by exact reciprocal multiplications, so the JIT compiler
+ * can unroll and vectorize them. PixelKernelsTest checks that every fast kernel
+ * matches its reference, bit for bit.
+ */
+final class PixelKernels {
+
+    private PixelKernels() {
+    }
+
+    //MARK: Point kernels
+    /**
+     * Calculates the weighted grey levels of the pixels from..to (exclusive).
+     */
+    static void greyLevels(int[] pixels, int from, int to, int r, int g, int b, int[] levels) {
+        if (!isExactDivision(r, g, b, r + g + b)) {
+            referenceGreyLevels(pixels, from, to, r, g, b, levels);
+            return;
+        }
+
+        double reciprocal = reciprocal(r + g + b);
+        for (int i = from; i < to; i++) {
+            int c = pixels[i];
+            int weighted = r * ((c >> 16) & 0xFF) + g * ((c >> 8) & 0xFF) + b * (c & 0xFF);
+            levels[i] = (int) (weighted * reciprocal);
+        }
+    }
+
+    static void referenceGreyLevels(int[] pixels, int from, int to, int r, int g, int b, int[] levels) {
+        for (int i = from; i < to; i++) {
+            int c = pixels[i];
+            int weightedRed = r * ImageProcessor.red(c);
+            int weightedGreen = g * ImageProcessor.green(c);
+            int weightedBlue = b * ImageProcessor.blue(c);
+            levels[i] = (weightedRed + weightedGreen + weightedBlue) / (r + g + b);
+        }
+    }
+
+    /**
+     * Packs the grey levels from..to (exclusive) as opaque grey pixels.
+     */
+    static void greyPixels(int[] levels, int from, int to, int[] pixels) {
+        for (int i = from; i < to; i++) {
+            int level = levels[i];
+            pixels[i] = 0xFF000000 | (level << 16) | (level << 8) | level;
+        }
+    }
+
+    static void referenceGreyPixels(int[] levels, int from, int to, int[] pixels) {
+        for (int i = from; i < to; i++) {
+            pixels[i] = ImageProcessor.rgb(levels[i], levels[i], levels[i]);
+        }
+    }
+
+    /**
+     * Scales every channel of the pixels from..to (exclusive) by its weight
+     * relative to the maximal weight.
+     */
+    static void changeHue(int[] pixels, int from, int to, int r, int g, int b, int max, int[] hued) {
+        if (!isExactDivision(r, g, b, max)) {
+            referenceChangeHue(pixels, from, to, r, g, b, max, hued);
+            return;
+        }
+
+        double reciprocal = reciprocal(max);
+        for (int i = from; i < to; i++) {
+            int c = pixels[i];
+            int red = (int) (r * ((c >> 16) & 0xFF) * reciprocal);
+            int green = (int) (g * ((c >> 8) & 0xFF) * reciprocal);
+            int blue = (int) (b * (c & 0xFF) * reciprocal);
+            hued[i] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+        }
+    }
+
+    static void referenceChangeHue(int[] pixels, int from, int to, int r, int g, int b, int max, int[] hued) {
+        for (int i = from; i < to; i++) {
+            int c = pixels[i];
+            int red = r * ImageProcessor.red(c) / max;
+            int green = g * ImageProcessor.green(c) / max;
+            int blue = b * ImageProcessor.blue(c) / max;
+            hued[i] = ImageProcessor.rgb(red, green, blue);
+        }
+    }
+
+    /**
+     * The reciprocal is slightly above 1 / divisor, so the product of a multiple
+     * of the divisor is never rounded below its quotient, and it adds less than
+     * 2^-39 * x / divisor, which keeps every other product below the next quotient.
+     * @return - A reciprocal for which (int) (x * reciprocal) == x / divisor
+     * for every 0 <= x <= Integer.MAX_VALUE.
+     */
+    static double reciprocal(int divisor) {
+        return (1 + 0x1p-40) / divisor;
+    }
+
+    /**
+     * @return - true if the weighted channels are never negative and never overflow,
+     * and the divisor is positive, so the divisions may be replaced by reciprocals.
+     */
+    private static boolean isExactDivision(int r, int g, int b, int divisor) {
+        return r >= 0 & g >= 0 & b >= 0 & divisor > 0 && 255L * ((long) r + g + b) <= Integer.MAX_VALUE;
+    }
+
+    //MARK: Gradient kernel
+    /**
+     * Calculates the gradient magnitude pixels of the rows fromY..toY (exclusive)
+     * of a grey levels plane. Every pixel is compared to its right and lower
+     * neighbors, the last column and the last row to their left and upper ones.
+     */
+    static void gradientRows(int[] grey, int width, int height, int fromY, int toY, int[] pixels) {
+        if (width < 2 || height < 2) {
+            referenceGradientRows(grey, width, height, fromY, toY, pixels);
+            return;
+        }
+
+        for (int y = fromY; y < toY; y++) {
+            int rowOffset = y * width;
+            int nextRowOffset = (y == height - 1 ? y - 1 : y + 1) * width;
+            for (int x = 0; x < width - 1; x++) {
+                int c = grey[rowOffset + x];
+                int dx = c - grey[rowOffset + x + 1];
+                int dy = c - grey[nextRowOffset + x];
+                int magnitude = (int) Math.sqrt((dx * dx + dy * dy) / 2);
+                pixels[rowOffset + x] = 0xFF000000 | (magnitude << 16) | (magnitude << 8) | magnitude;
+            }
+
+            int lastX = rowOffset + width - 1;
+            int dx = grey[lastX] - grey[lastX - 1];
+            int dy = grey[lastX] - grey[nextRowOffset + width - 1];
+            int magnitude = (int) Math.sqrt((dx * dx + dy * dy) / 2);
+            pixels[lastX] = 0xFF000000 | (magnitude << 16) | (magnitude << 8) | magnitude;
+        }
+    }
+
+    static void referenceGradientRows(int[] grey, int width, int height, int fromY, int toY, int[] pixels) {
+        for (int y = fromY; y < toY; y++) {
+            int rowOffset = y * width;
+            int nextRowOffset = (y == height - 1 ? y - 1 : y + 1) * width;
+            for (int x = 0; x < width; x++) {
+                int nextX = x == width - 1 ? x - 1 : x + 1;
+                int dx = grey[rowOffset + x] - grey[rowOffset + nextX];
+                int dy = grey[rowOffset + x] - grey[nextRowOffset + x];
+                int magnitude = (int) Math.sqrt((dx * dx + dy * dy) / 2);
+                pixels[rowOffset + x] = ImageProcessor.rgb(magnitude, magnitude, magnitude);
+            }
+        }
+    }
+
+    //MARK: Seams cost kernels
+    /**
+     * Calculates the cells fromX..toX of the first cost row of a greyscale plane,
+     * which are the pixel energies.
+     */
+    static void firstCostRow(int[] grey, int width, int fromX, int toX, long[] costs, int costsOffset) {
+        int innerToX = Math.min(toX, width - 2);
+        for (int x = fromX; x <= innerToX; x++) {
+            costs[costsOffset + x] = Math.abs(grey[x] - grey[x + 1]);
+        }
+        if (innerToX < toX) {
+            referenceFirstCostRow(grey, width, Math.max(fromX, innerToX + 1), toX, costs, costsOffset);
+        }
+    }
+
+    static void referenceFirstCostRow(int[] grey, int width, int fromX, int toX, long[] costs, int costsOffset) {
+        for (int x = fromX; x <= toX; x++) {
+            int nextX = x + 1 < width ? x + 1 : x - 1;
+            costs[costsOffset + x] = Math.abs(grey[x] - grey[nextX]);
+        }
+    }
+
+    /**
+     * Calculates the cells fromX..toX of the cost row y of a greyscale plane,
+     * the parents are stored with the same row stride as the plane.
+     * The first and last columns go through the reference kernel, the columns
+     * between them have all three parents.
+     */
+    static void costRow(int[] grey, int stride, int width, int y, int fromX, int toX,
+                        long[] prevCosts, int prevCostsOffset,
+                        long[] currCosts, int currCostsOffset, int[] parents) {
+        int rowOffset = y * stride;
+        int prevRowOffset = rowOffset - stride;
+        int innerFromX = Math.max(fromX, 1);
+        int innerToX = Math.min(toX, width - 2);
+        if (fromX < innerFromX) {
+            referenceCostRow(grey, stride, width, y, fromX, Math.min(toX, innerFromX - 1),
+                    prevCosts, prevCostsOffset, currCosts, currCostsOffset, parents);
+        }
+
+        for (int x = innerFromX; x <= innerToX; x++) {
+            int i = rowOffset + x;
+            int greyLeft = grey[i - 1];
+            int greyRight = grey[i + 1];
+            int greyUp = grey[prevRowOffset + x];
+            int cV = Math.abs(greyRight - greyLeft);
+
+            long left = prevCosts[prevCostsOffset + x - 1] + cV + Math.abs(greyUp - greyLeft);
+            long up = prevCosts[prevCostsOffset + x] + cV;
+            long right = prevCosts[prevCostsOffset + x + 1] + cV + Math.abs(greyUp - greyRight);
+
+            // Ties are broken in favor of right, then left, then up, as in the reference
+            long minCost = Math.min(up, Math.min(left, right));
+            parents[i] = minCost == right ? x + 1 : minCost == left ? x - 1 : x;
+            currCosts[currCostsOffset + x] = Math.abs(grey[i] - greyRight) + minCost;
+        }
+
+        int lastFromX = Math.max(innerFromX, innerToX + 1);
+        if (lastFromX <= toX) {
+            referenceCostRow(grey, stride, width, y, lastFromX, toX,
+                    prevCosts, prevCostsOffset, currCosts, currCostsOffset, parents);
+        }
+    }
+
+    static void referenceCostRow(int[] grey, int stride, int width, int y, int fromX, int toX,
+                                 long[] prevCosts, int prevCostsOffset,
+                                 long[] currCosts, int currCostsOffset, int[] parents) {
+        int rowOffset = y * stride;
+        int prevRowOffset = rowOffset - stride;
+        int lastX = width - 1;
+
+        for (int x = fromX; x <= toX; x++) {
+            int greyLeft = x > 0 ? grey[rowOffset + x - 1] : 0;
+            int greyRight = x < lastX ? grey[rowOffset + x + 1] : 0;
+            int greyUp = grey[prevRowOffset + x];
+            int pixelEnergy = Math.abs(grey[rowOffset + x] - (x < lastX ? greyRight : greyLeft));
+
+            int cV;
+            if (x == 0) {
+                cV = greyRight;
+            } else if (x == lastX) {
+                cV = greyLeft;
+            } else {
+                cV = Math.abs(greyRight - greyLeft);
+            }
+
+            long left = x > 0 ? prevCosts[prevCostsOffset + x - 1] + cV + Math.abs(greyUp - greyLeft) : Long.MAX_VALUE;
+            long up = prevCosts[prevCostsOffset + x] + cV;
+            long right = x < lastX ? prevCosts[prevCostsOffset + x + 1] + cV + Math.abs(greyUp - greyRight) : Long.MAX_VALUE;
+
+            // Store the minimal path direction for fast path recovery,
+            // ties are broken in favor of right, then left, then up.
+            int parentX = x;
+            long minCost = Math.min(up, Math.min(left, right));
+            if (minCost == right && x < lastX) {
+                parentX += 1;
+            } else if (minCost == left && x > 0) {
+                parentX -= 1;
+            }
+
+            parents[rowOffset + x] = parentX;
+            currCosts[currCostsOffset + x] = pixelEnergy + minCost;
+        }
+    }
+}
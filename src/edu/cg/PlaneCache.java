@@ -0,0 +1,44 @@
+package edu.cg;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import edu.cg.Logger.Level;
+
+/**
+ * A bounded cache of the planes derived from the working images, keyed by the
+ * content hash of the image, the plane, the image type (which may change the grey
+ * levels) and the RGB weights (see BoundedLruCache). Every plane is calculated once,
+ * and shared by the processors of the same image, so the cached planes must not be modified.
+ */
+public class PlaneCache extends BoundedLruCache<List<Object>, int[]> {
+
+    //MARK: The derived planes, row by row
+    public enum Plane {
+        // Grey levels between 0 and 255 (see ImageProcessor.greyscaleLevels)
+        LUMA,
+        // Packed grey pixels of the gradient magnitude, the pixel energy
+        GRADIENT
+    }
+
+    //MARK: Constructor
+    /**
+     * @param maxBytes - The budget of the cached planes.
+     */
+    public PlaneCache(Logger logger, long maxBytes) {
+        super(logger, "plane", Level.DEBUG, maxBytes, plane -> 4L * plane.length);
+    }
+
+    //MARK: Methods
+    /**
+     * @param contentHash - The content hash of the image (see ImageProcessor.contentHash).
+     * @param imageType - The type of the images which the processor creates.
+     * @return - The cached plane, or the calculated plane, which is cached unless
+     * it is larger than the whole budget.
+     */
+    public int[] get(long contentHash, Plane plane, int imageType, RGBWeights rgbWeights,
+                     Supplier<int[]> calculation) {
+        return get(List.of(contentHash, plane, imageType,
+                rgbWeights.redWeight, rgbWeights.greenWeight, rgbWeights.blueWeight), calculation);
+    }
+}
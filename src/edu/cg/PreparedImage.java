@@ -0,0 +1,58 @@
+package edu.cg;
+
+import java.awt.image.BufferedImage;
+
+import edu.cg.Logger.Level;
+
+/**
+ * The per image preparation of the processors: the working image pixels and its
+ * grey levels for the RGB weights, read and calculated once. A prepared image is
+ * never modified, so it can serve any number of processors and carvers at once,
+ * on any threads. Each of them holds only the scratch state of its own call, and
+ * shares the prepared planes instead of preparing the image again.
+ * The working image must not be modified while it is prepared.
+ */
+public class PreparedImage {
+
+    //MARK: Fields
+    public final BufferedImage image;
+    public final RGBWeights rgbWeights;
+    public final int width;
+    public final int height;
+    // Packed ARGB values and grey levels (see ImageProcessor.greyscaleLevels), row by row
+    final int[] pixels;
+    final int[] greyLevels;
+
+    //MARK: Constructor
+    public PreparedImage(Logger logger, BufferedImage image, RGBWeights rgbWeights) {
+        this.image = image;
+        this.rgbWeights = rgbWeights;
+        width = image.getWidth();
+        height = image.getHeight();
+
+        ImageProcessor processor = new ImageProcessor(Logger.atLevel(logger, Level.WARN), image, rgbWeights);
+        pixels = processor.workingPixels;
+        greyLevels = processor.sharedGreyscaleLevels();
+        logger.log(Level.DEBUG, () -> "prepared a " + width + "x" + height + " image");
+    }
+
+    //MARK: Operations, each one on a processor of its own
+    public ImageProcessor newProcessor(Logger logger, int outWidth, int outHeight) {
+        return new ImageProcessor(logger, this, outWidth, outHeight);
+    }
+
+    /**
+     * @param outSize - The output width for vertical seams,
+     *                or the output height for horizontal seams.
+     */
+    public SeamsCarver newSeamsCarver(Logger logger, int outSize, SeamsCarver.Orientation orientation) {
+        return new SeamsCarver(logger, this, outSize, orientation);
+    }
+
+    /**
+     * @return - A two dimensional retargeting session (see SeamsCarver).
+     */
+    public SeamsCarver newSeamsCarver(Logger logger, int outWidth, int outHeight) {
+        return new SeamsCarver(logger, this, outWidth, outHeight);
+    }
+}
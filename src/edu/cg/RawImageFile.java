@@ -0,0 +1,147 @@
+package edu.cg;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An uncompressed image file, which is read and written in bands of rows, so
+ * images larger than the heap can be processed (see StripProcessor).
+ * The header holds the image size, followed by the pixels as packed ARGB
+ * values (the getRGB format), row by row. Every band of rows is memory mapped
+ * on its own, so the file may be larger than a single mapping.
+ */
+public class RawImageFile implements Closeable {
+
+    //MARK: Format
+    private static final int MAGIC = 0x52415749; // "RAWI"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+    //MARK: Fields
+    public final int width;
+    public final int height;
+    private final FileChannel channel;
+    private final boolean writable;
+
+    private RawImageFile(FileChannel channel, int width, int height, boolean writable) {
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.writable = writable;
+    }
+
+    //MARK: Factories
+    /**
+     * Opens an existing raw image file for reading.
+     */
+    public static RawImageFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_BYTES)
+                throw new IOException("Not a raw image file: " + file);
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+                throw new IOException("Not a raw image file: " + file);
+
+            int width = header.getInt(8);
+            int height = header.getInt(12);
+            if (width <= 0 || height <= 0 || channel.size() < HEADER_BYTES + 4L * width * height)
+                throw new IOException("Truncated raw image file: " + file);
+
+            return new RawImageFile(channel, width, height, false);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates (or overwrites) a raw image file of the given size for writing,
+     * its rows are written by writeRows.
+     */
+    public static RawImageFile create(Path file, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("The raw image size must be positive");
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            // Mapping the rows for writing extends the file
+            channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES)
+                    .putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height);
+            return new RawImageFile(channel, width, height, true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a whole image as a raw image file.
+     */
+    public static void write(BufferedImage image, Path file) throws IOException {
+        try (RawImageFile raw = create(file, image.getWidth(), image.getHeight())) {
+            raw.writeRows(0, raw.height, ImageProcessor.readPixels(image), 0);
+        }
+    }
+
+    /**
+     * Reads a whole raw image file, which must fit in the heap.
+     * @return - A new packed ARGB image.
+     */
+    public static BufferedImage read(Path file) throws IOException {
+        try (RawImageFile raw = open(file)) {
+            if ((long) raw.width * raw.height > Integer.MAX_VALUE)
+                throw new IOException("The raw image is too large to read as a whole: " + file);
+
+            int[] pixels = new int[raw.width * raw.height];
+            raw.readRows(0, raw.height, pixels, 0);
+            BufferedImage image = new BufferedImage(raw.width, raw.height, BufferedImage.TYPE_INT_ARGB);
+            ImageProcessor.writePixels(image, pixels, raw.width);
+            return image;
+        }
+    }
+
+    //MARK: Methods
+    /**
+     * Reads the pixels of rows fromY (inclusive) to toY (exclusive).
+     * @param pixels - Filled row by row with (toY - fromY) * width pixels, from offset.
+     */
+    public void readRows(int fromY, int toY, int[] pixels, int offset) throws IOException {
+        mapRows(fromY, toY, FileChannel.MapMode.READ_ONLY).asIntBuffer().get(pixels, offset, (toY - fromY) * width);
+    }
+
+    /**
+     * Writes the pixels of rows fromY (inclusive) to toY (exclusive).
+     * @param pixels - Holds (toY - fromY) * width pixels row by row, from offset.
+     */
+    public void writeRows(int fromY, int toY, int[] pixels, int offset) throws IOException {
+        if (!writable)
+            throw new IOException("The raw image file is open for reading");
+
+        MappedByteBuffer rows = mapRows(fromY, toY, FileChannel.MapMode.READ_WRITE);
+        rows.asIntBuffer().put(pixels, offset, (toY - fromY) * width);
+    }
+
+    private MappedByteBuffer mapRows(int fromY, int toY, FileChannel.MapMode mode) throws IOException {
+        if (fromY < 0 || toY > height || fromY >= toY)
+            throw new IllegalArgumentException("Rows " + fromY + " to " + toY + " are out of the image");
+
+        long bytes = 4L * (toY - fromY) * width;
+        if (bytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Too many rows for a single mapping: " + (toY - fromY));
+
+        return channel.map(mode, HEADER_BYTES + 4L * fromY * width, bytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,289 @@
+package edu.cg;
+
+/**
+ * The table driven resampling of ImageProcessor. The source columns and rows of
+ * every output column and row are calculated once, together with their weights,
+ * instead of once per output pixel. The filters are applied in two separable
+ * passes, a horizontal pass which resamples every source row to the output width,
+ * and a vertical pass which combines those rows into the output rows.
+ */
+final class Resampler {
+
+    //MARK: The convolution filters, with their support in source pixels
+    enum Filter {
+        // Catmull-Rom, the cubic convolution with a = -0.5
+        BICUBIC(2),
+        LANCZOS(3);
+
+        final int support;
+
+        Filter(int support) {
+            this.support = support;
+        }
+
+        double weight(double x) {
+            x = Math.abs(x);
+            if (x >= support)
+                return 0;
+
+            if (this == BICUBIC) {
+                double a = -0.5;
+                return x < 1
+                        ? ((a + 2) * x - (a + 3)) * x * x + 1
+                        : ((a * x - 5 * a) * x + 8 * a) * x - 4 * a;
+            }
+
+            if (x == 0)
+                return 1;
+
+            double piX = Math.PI * x;
+            return support * Math.sin(piX) * Math.sin(piX / support) / (piX * piX);
+        }
+    }
+
+    //MARK: Fixed point weights, of 14 fractional bits
+    private static final int WEIGHT_BITS = 14;
+    private static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+
+    /**
+     * The source pixels of every output pixel along one axis, taps per output pixel.
+     * The indexes are clamped to the source, so the edge pixels are repeated.
+     */
+    private static final class Taps {
+        final int taps;
+        final int[] indexes;
+        final int[] weights;
+
+        Taps(int taps, int outSize) {
+            this.taps = taps;
+            indexes = new int[taps * outSize];
+            weights = new int[taps * outSize];
+        }
+    }
+
+    private Resampler() {
+    }
+
+    //MARK: Nearest neighbor
+    /**
+     * The same mapping as ImageProcessor.nearestNeighborPixel, with the source
+     * column of every output column and the source row of every output row in tables.
+     * An output row with the same source row as the row above it is copied.
+     */
+    static int[] nearestNeighbor(FunctioalForEachLoops loops, int[] pixels, int inWidth, int inHeight,
+                                 int outWidth, int outHeight) {
+        int[] sourceX = new int[outWidth];
+        for (int x = 0; x < outWidth; x++) {
+            sourceX[x] = Math.min((int) Math.round(((double) x) / outWidth * inWidth), inWidth - 1);
+        }
+        int[] sourceY = new int[outHeight];
+        for (int y = 0; y < outHeight; y++) {
+            sourceY[y] = ImageProcessor.nearestNeighborSourceY(y, inHeight, outHeight);
+        }
+
+        int[] ans = new int[outWidth * outHeight];
+        loops.parallelForEachRows(outHeight, (fromY, toY) -> {
+            for (int y = fromY; y < toY; y++) {
+                int rowOffset = y * outWidth;
+                if (y > fromY && sourceY[y] == sourceY[y - 1]) {
+                    System.arraycopy(ans, rowOffset - outWidth, ans, rowOffset, outWidth);
+                    continue;
+                }
+
+                int sourceRowOffset = sourceY[y] * inWidth;
+                for (int x = 0; x < outWidth; x++) {
+                    ans[rowOffset + x] = pixels[sourceRowOffset + sourceX[x]];
+                }
+            }
+        });
+        return ans;
+    }
+
+    //MARK: Bilinear
+    /**
+     * The same arithmetic as ImageProcessor.bilinearPixel, which interpolates
+     * the two source rows of an output row horizontally and truncates every
+     * channel, before interpolating the two rows vertically. So the source rows
+     * are interpolated horizontally once, and kept while the following output
+     * rows read them as well.
+     */
+    static int[] bilinear(FunctioalForEachLoops loops, int[] pixels, int inWidth, int inHeight,
+                          int outWidth, int outHeight) {
+        int[] leftX = new int[outWidth];
+        int[] rightX = new int[outWidth];
+        double[] tX = new double[outWidth];
+        for (int x = 0; x < outWidth; x++) {
+            double interpolatedX = ((double) x) / outWidth * inWidth;
+            leftX[x] = (int) Math.floor(interpolatedX);
+            rightX[x] = Math.min((int) Math.ceil(interpolatedX), inWidth - 1);
+            tX[x] = rightX[x] - interpolatedX;
+        }
+
+        int[] ans = new int[outWidth * outHeight];
+        loops.parallelForEachRows(outHeight, (fromY, toY) -> {
+            // The two source rows of the last output row, interpolated horizontally
+            int[][] rows = { new int[outWidth], new int[outWidth] };
+            int[] rowsY = { -1, -1 };
+            for (int y = fromY; y < toY; y++) {
+                double interpolatedY = ((double) y) / outHeight * inHeight;
+                int bottomY = ImageProcessor.bilinearSourceFromY(y, inHeight, outHeight);
+                int topY = ImageProcessor.bilinearSourceToY(y, inHeight, outHeight);
+                double tY = topY - interpolatedY;
+
+                int[] bottom = interpolatedRow(rows, rowsY, bottomY, topY, pixels, inWidth, leftX, rightX, tX);
+                int[] top = interpolatedRow(rows, rowsY, topY, bottomY, pixels, inWidth, leftX, rightX, tX);
+                int rowOffset = y * outWidth;
+                for (int x = 0; x < outWidth; x++) {
+                    int cBottom = bottom[x];
+                    int cTop = top[x];
+                    int red = (int) (tY * ImageProcessor.red(cBottom) + (1 - tY) * ImageProcessor.red(cTop));
+                    int green = (int) (tY * ImageProcessor.green(cBottom) + (1 - tY) * ImageProcessor.green(cTop));
+                    int blue = (int) (tY * ImageProcessor.blue(cBottom) + (1 - tY) * ImageProcessor.blue(cTop));
+                    ans[rowOffset + x] = ImageProcessor.rgb(red, green, blue);
+                }
+            }
+        });
+        return ans;
+    }
+
+    /**
+     * @return - The source row sourceY interpolated horizontally, out of the two
+     * kept rows. Otherwise it replaces the kept row which is not keptY.
+     */
+    private static int[] interpolatedRow(int[][] rows, int[] rowsY, int sourceY, int keptY, int[] pixels,
+                                         int inWidth, int[] leftX, int[] rightX, double[] tX) {
+        for (int i = 0; i < 2; i++) {
+            if (rowsY[i] == sourceY)
+                return rows[i];
+        }
+
+        int slot = rowsY[0] == keptY ? 1 : 0;
+        int[] row = rows[slot];
+        rowsY[slot] = sourceY;
+        int sourceRowOffset = sourceY * inWidth;
+        for (int x = 0; x < row.length; x++) {
+            int cLeft = pixels[sourceRowOffset + leftX[x]];
+            int cRight = pixels[sourceRowOffset + rightX[x]];
+            double t = tX[x];
+            int red = (int) (t * ImageProcessor.red(cLeft) + (1 - t) * ImageProcessor.red(cRight));
+            int green = (int) (t * ImageProcessor.green(cLeft) + (1 - t) * ImageProcessor.green(cRight));
+            int blue = (int) (t * ImageProcessor.blue(cLeft) + (1 - t) * ImageProcessor.blue(cRight));
+            row[x] = ImageProcessor.rgb(red, green, blue);
+        }
+        return row;
+    }
+
+    //MARK: Convolution
+    /**
+     * Resamples with a convolution filter, whose support is widened by the scale
+     * factor when downscaling, so every source pixel contributes to the output.
+     * The pixel centers are aligned, and the channels are rounded and clamped
+     * after each pass. The output pixels are opaque.
+     */
+    static int[] convolve(FunctioalForEachLoops loops, int[] pixels, int inWidth, int inHeight,
+                          int outWidth, int outHeight, Filter filter) {
+        Taps columns = taps(inWidth, outWidth, filter);
+        Taps rows = taps(inHeight, outHeight, filter);
+
+        // Horizontal pass, every source row is resampled to the output width
+        int[] horizontal = new int[outWidth * inHeight];
+        loops.parallelForEachRows(inHeight, (fromY, toY) -> {
+            for (int y = fromY; y < toY; y++) {
+                int sourceRowOffset = y * inWidth;
+                int rowOffset = y * outWidth;
+                for (int x = 0, tap = 0; x < outWidth; x++) {
+                    int red = 0;
+                    int green = 0;
+                    int blue = 0;
+                    for (int k = 0; k < columns.taps; k++, tap++) {
+                        int c = pixels[sourceRowOffset + columns.indexes[tap]];
+                        int weight = columns.weights[tap];
+                        red += weight * ((c >> 16) & 0xFF);
+                        green += weight * ((c >> 8) & 0xFF);
+                        blue += weight * (c & 0xFF);
+                    }
+                    horizontal[rowOffset + x] = roundedRGB(red, green, blue);
+                }
+            }
+        });
+
+        // Vertical pass, the rows are accumulated a tap at a time
+        int[] ans = new int[outWidth * outHeight];
+        loops.parallelForEachRows(outHeight, (fromY, toY) -> {
+            int[] red = new int[outWidth];
+            int[] green = new int[outWidth];
+            int[] blue = new int[outWidth];
+            for (int y = fromY; y < toY; y++) {
+                for (int k = 0, tap = y * rows.taps; k < rows.taps; k++, tap++) {
+                    int sourceRowOffset = rows.indexes[tap] * outWidth;
+                    int weight = rows.weights[tap];
+                    for (int x = 0; x < outWidth; x++) {
+                        int c = horizontal[sourceRowOffset + x];
+                        int weightedRed = weight * ((c >> 16) & 0xFF);
+                        int weightedGreen = weight * ((c >> 8) & 0xFF);
+                        int weightedBlue = weight * (c & 0xFF);
+                        red[x] = k == 0 ? weightedRed : red[x] + weightedRed;
+                        green[x] = k == 0 ? weightedGreen : green[x] + weightedGreen;
+                        blue[x] = k == 0 ? weightedBlue : blue[x] + weightedBlue;
+                    }
+                }
+
+                int rowOffset = y * outWidth;
+                for (int x = 0; x < outWidth; x++) {
+                    ans[rowOffset + x] = roundedRGB(red[x], green[x], blue[x]);
+                }
+            }
+        });
+        return ans;
+    }
+
+    /**
+     * Calculates the source indexes and the fixed point weights of every output
+     * pixel along an axis. The weights of every output pixel add up to WEIGHT_ONE,
+     * the rounding error is added to its largest weight.
+     */
+    private static Taps taps(int inSize, int outSize, Filter filter) {
+        double scale = (double) inSize / outSize;
+        double filterScale = Math.max(1, scale);
+        double support = filter.support * filterScale;
+        Taps taps = new Taps((int) Math.ceil(2 * support) + 1, outSize);
+        double[] weights = new double[taps.taps];
+
+        for (int i = 0; i < outSize; i++) {
+            double center = (i + 0.5) * scale;
+            int first = (int) Math.floor(center - support);
+            double sum = 0;
+            for (int k = 0; k < taps.taps; k++) {
+                weights[k] = filter.weight((first + k + 0.5 - center) / filterScale);
+                sum += weights[k];
+            }
+
+            int offset = i * taps.taps;
+            int fixedSum = 0;
+            int largest = 0;
+            for (int k = 0; k < taps.taps; k++) {
+                taps.indexes[offset + k] = Math.min(Math.max(first + k, 0), inSize - 1);
+                taps.weights[offset + k] = (int) Math.round(weights[k] / sum * WEIGHT_ONE);
+                fixedSum += taps.weights[offset + k];
+                if (weights[k] > weights[largest]) {
+                    largest = k;
+                }
+            }
+            taps.weights[offset + largest] += WEIGHT_ONE - fixedSum;
+        }
+        return taps;
+    }
+
+    /**
+     * @return - An opaque pixel of fixed point channels, rounded and clamped to 0..255.
+     */
+    private static int roundedRGB(int red, int green, int blue) {
+        int half = WEIGHT_ONE >> 1;
+        return ImageProcessor.rgb(clamp((red + half) >> WEIGHT_BITS),
+                clamp((green + half) >> WEIGHT_BITS), clamp((blue + half) >> WEIGHT_BITS));
+    }
+
+    private static int clamp(int channel) {
+        return Math.min(Math.max(channel, 0), 255);
+    }
+}
@@ -0,0 +1,105 @@
+package edu.cg;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.util.function.Supplier;
+
+import edu.cg.Logger.Level;
+
+/**
+ * A bounded cache of the images produced by the processing operations, keyed by
+ * the content hash of the working image, the operation, the output size and the
+ * RGB weights (see BoundedLruCache). Every call gets a copy of the cached image,
+ * so the callers may modify their results.
+ */
+public class ResultCache extends BoundedLruCache<ResultCache.Key, BufferedImage> {
+
+    //MARK: The identity of an operation result
+    public static final class Key {
+        public final long contentHash;
+        public final String operation;
+        public final int outWidth;
+        public final int outHeight;
+        private final int redWeight;
+        private final int greenWeight;
+        private final int blueWeight;
+
+        /**
+         * The operations which keep the image size, such as changing the hue, ignore
+         * the output size, so they are keyed by a fixed size, the working image size
+         * for example, and every output size shares their result.
+         * @param contentHash - The content hash of the working image (see ImageProcessor.contentHash).
+         * @param operation - The name of the operation, including any parameter which
+         *                  is not part of the key otherwise.
+         */
+        public Key(long contentHash, String operation, int outWidth, int outHeight, RGBWeights rgbWeights) {
+            this.contentHash = contentHash;
+            this.operation = operation;
+            this.outWidth = outWidth;
+            this.outHeight = outHeight;
+            redWeight = rgbWeights.redWeight;
+            greenWeight = rgbWeights.greenWeight;
+            blueWeight = rgbWeights.blueWeight;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+
+            Key other = (Key) obj;
+            return contentHash == other.contentHash && operation.equals(other.operation)
+                    && outWidth == other.outWidth && outHeight == other.outHeight
+                    && redWeight == other.redWeight && greenWeight == other.greenWeight
+                    && blueWeight == other.blueWeight;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = Long.hashCode(contentHash);
+            hash = hash * 31 + operation.hashCode();
+            hash = hash * 31 + outWidth;
+            hash = hash * 31 + outHeight;
+            hash = hash * 31 + redWeight;
+            hash = hash * 31 + greenWeight;
+            return hash * 31 + blueWeight;
+        }
+
+        @Override
+        public String toString() {
+            return operation + " [" + outWidth + "][" + outHeight + "]";
+        }
+    }
+
+    //MARK: Constructor
+    /**
+     * @param maxBytes - The budget of the cached images pixel data.
+     */
+    public ResultCache(Logger logger, long maxBytes) {
+        super(logger, "result", Level.INFO, maxBytes, ResultCache::sizeOf);
+    }
+
+    //MARK: Methods
+    /**
+     * @return - A copy of the cached image of the key, or of the calculated image.
+     */
+    @Override
+    public BufferedImage get(Key key, Supplier<? extends BufferedImage> calculation) {
+        return copyOf(super.get(key, calculation));
+    }
+
+    //MARK: Utilities
+    private static BufferedImage copyOf(BufferedImage img) {
+        ColorModel colorModel = img.getColorModel();
+        return new BufferedImage(colorModel, img.copyData(null), colorModel.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * @return - The size of the image pixel data, in bytes.
+     */
+    public static long sizeOf(BufferedImage img) {
+        DataBuffer buffer = img.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+}
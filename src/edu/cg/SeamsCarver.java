@@ -1,287 +1,1435 @@
 package edu.cg;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinTask;
+
+import edu.cg.Logger.Level;
+import edu.cg.PhaseMetrics.Phase;
 
 public class SeamsCarver extends ImageProcessor {
 
+    //MARK: The direction of the seams, vertical seams change the image width.
+    public enum Orientation {
+        VERTICAL,
+        HORIZONTAL
+    }
+
     //MARK: An inner interface for functional programming.
     @FunctionalInterface
     interface ResizeOperation {
         BufferedImage apply();
     }
 
+    //MARK: An inner interface for the progress of the seams search.
+    @FunctionalInterface
+    public interface ProgressListener {
+        void seamsDone(int seamsDone, int totalSeams);
+    }
+
+    //MARK: An inner interface for the intermediate images of the seams search.
+    @FunctionalInterface
+    public interface PreviewListener {
+        void preview(BufferedImage preview, int seamsDone, int totalSeams);
+    }
+
+    //MARK: Parallel cost calculation tiling
+    private static final int TILE_ROWS = 32;
+    private static final int MIN_TILE_WIDTH = 256;
+
+    //MARK: Cost of the cells outside the band of the coarse to fine search
+    private static final long UNREACHABLE_COST = Long.MAX_VALUE / 4;
+
+    //MARK: Adaptive multi seam passes take one seam per this many columns
+    private static final int ADAPTIVE_COLUMNS_PER_SEAM = 32;
+
     //MARK: Fields
+    // The seams are carved out of a plane of planeWidth x planeHeight pixels,
+    // which is the image itself for vertical seams and the image rotated
+    // clockwise for horizontal seams.
+    private Orientation orientation;
+    private int planeWidth;
+    private int planeHeight;
+    private int outPlaneWidth;
     private int numOfSeams;
+    // The plane width at the end of the pass, an enlargement takes several rounds to it
+    private int targetPlaneWidth;
     private ResizeOperation resizeOp;
-    private int[][] transformMatrix;
-    private int[][] greyScaledImage;
-    private int[][] minParentsPaths;
-    private SeamData[][] allSeams;
+    private int currentWidth;
+    private boolean carvePixels;
+    private boolean seamsSearched;
+    private ProgressListener progressListener;
+    private int seamsDone;
+    private int totalSeams;
+
+    //MARK: Progressive previews, of the carved image or of the seams found so far
+    private PreviewListener previewListener;
+    private int previewEverySeams;
+    private long previewEveryNanos;
+    private int lastPreviewSeams;
+    private long lastPreviewNanos;
+    private int previewSeamRGB = 0xFFFF0000;
+    private int[] previewPlane;
+    private int previewPlaneSeams;
+
+    // Two dimensional retargeting: both directions are carved out of the same planes,
+    // which are transposed between the directions (into the spare planes)
+    private boolean retargeting;
+    private int interleavedSeams;
+    private int[] spareGreyScaledImage;
+    private int[] sparePixels;
+
+    // Flat row-major planes (row stride is planeWidth), compacted in place per seam
+    private int[] greyScaledImage;
+    private int[] pixels;
+    private int[] originalXIndexes;
+
+    private int[] minParentsPaths;
+    private long[] costRows;
+    private int costBufferRows;
+    private int parallelism = 1;
+    private int[] seamPath;
+    private int[][] allSeams;
+
+    // Incremental update mode: a full cost matrix which is patched after every seam
+    private boolean incrementalUpdate;
+    private boolean verifyIncrementalUpdate;
+    private boolean costMatrixReady;
+    private long[] costMatrix;
+    private long[] previousCosts;
+
+    // Multi seam passes: several non intersecting seams are taken from one cost matrix
+    private int seamsPerPass = 1;
+    private int[][] passSeamPaths;
+    private int[] takenPixels;
+    private int passStamp;
+    private long[] bottomCandidates;
+    private int[] rowSeamsX;
+    // The pass seam of every pixel of two neighbouring rows, or -1, for the seams cost
+    private int[] passSeamsAbove;
+    private int[] passSeamsRow;
+    private long seamsCost;
+    // Approximation quality measurement: the cost of the exact seam of every plane a seam is removed from
+    private boolean measureSeams;
+    private long minimalSeamsCost;
+
+    // Coarse to fine search: seams are found on a downsampled pyramid level,
+    // and refined on the full resolution inside a band around the upsampled path.
+    // The coarse level is built once per plane, and carved along with the plane
+    // (row stride is coarseStride), coarseRemovals counts the removed pixels of its cells
+    private int pyramidLevels;
+    private int pyramidBandWidth;
+    private int[] coarseGrey;
+    private int[] coarseRemovals;
+    private int coarseStride;
+    private int coarseWidth;
+    private int coarseHeight;
+    private long[] coarseCosts;
+    private int[] coarseParents;
+    private int[] coarsePath;
+    private int[] bandFromX;
+    private int[] bandToX;
 
     //MARK: Constructor
     public SeamsCarver(Logger logger, BufferedImage workingImage,
                        int outWidth, RGBWeights rgbWeights) {
-        super(logger, workingImage, rgbWeights, outWidth, workingImage.getHeight());
-
-        numOfSeams = Math.abs(outWidth - inWidth);
+        this(logger, workingImage, outWidth, rgbWeights, Orientation.VERTICAL);
+    }
 
-        if (inWidth < 2 | inHeight < 2)
-            throw new RuntimeException("Can not apply seam carving: workingImage is too small");
+    /**
+     * @param outSize - The output width for vertical seams,
+     *                or the output height for horizontal seams.
+     */
+    public SeamsCarver(Logger logger, BufferedImage workingImage,
+                       int outSize, RGBWeights rgbWeights, Orientation orientation) {
+        this(logger, workingImage, rgbWeights,
+                orientation == Orientation.VERTICAL ? outSize : workingImage.getWidth(),
+                orientation == Orientation.VERTICAL ? workingImage.getHeight() : outSize, orientation);
+        initializeResizeOp();
+    }
 
-        if (numOfSeams > inWidth / 2)
-            throw new RuntimeException("Can not apply seam carving: too many seams...");
+    /**
+     * A carver of a prepared image, which shares its pixels and grey levels.
+     * @param outSize - The output width for vertical seams,
+     *                or the output height for horizontal seams.
+     */
+    public SeamsCarver(Logger logger, PreparedImage prepared, int outSize, Orientation orientation) {
+        super(logger, prepared,
+                orientation == Orientation.VERTICAL ? outSize : prepared.width,
+                orientation == Orientation.VERTICAL ? prepared.height : outSize);
+        initializePlanes(orientation);
+        initializeResizeOp();
+    }
 
+    private void initializeResizeOp() {
         // Sets resizeOp with an appropriate method reference
-        if (outWidth > inWidth)
+        if (outPlaneWidth > planeWidth)
             resizeOp = this::increaseImageWidth;
-        else if (outWidth < inWidth)
+        else if (outPlaneWidth < planeWidth)
             resizeOp = this::reduceImageWidth;
         else
             resizeOp = this::duplicateWorkingImage;
+        totalSeams = Math.abs(targetPlaneWidth - planeWidth);
+    }
 
-        transformMatrix = new int[inHeight][inWidth];
-        setForEachInputParameters();
-        forEach((y, x) -> {
-            // contains the x location on the original image (y is always the same)
-            transformMatrix[y][x] = x;
-        });
+    /**
+     * Creates a two dimensional retargeting session, which changes the width with
+     * vertical seams and the height with horizontal seams. Both directions share
+     * the greyscale and pixel planes of the session, which are transposed in place
+     * between them, so the image is never written and read back in between.
+     */
+    public SeamsCarver(Logger logger, BufferedImage workingImage,
+                       int outWidth, int outHeight, RGBWeights rgbWeights) {
+        this(logger, workingImage, rgbWeights, outWidth, outHeight, Orientation.VERTICAL);
+        initializeRetargeting();
+    }
 
-        // init greyScaled version of the working image
-        initializeGreyScaledImage();
-        allSeams = new SeamData[numOfSeams][inHeight];
+    /**
+     * A two dimensional retargeting session of a prepared image, which shares
+     * its pixels and grey levels.
+     */
+    public SeamsCarver(Logger logger, PreparedImage prepared, int outWidth, int outHeight) {
+        super(logger, prepared, outWidth, outHeight);
+        initializePlanes(Orientation.VERTICAL);
+        initializeRetargeting();
+    }
+
+    private void initializeRetargeting() {
+        if (inHeight - outHeight > inHeight / 2)
+            throw new RuntimeException("Can not apply seam carving: too many seams...");
+
+        retargeting = true;
+        resizeOp = this::retargetImage;
+        totalSeams = Math.abs(outWidth - inWidth) + Math.abs(outHeight - inHeight);
+    }
 
+    private SeamsCarver(Logger logger, BufferedImage workingImage, RGBWeights rgbWeights,
+                        int outWidth, int outHeight, Orientation orientation) {
+        super(logger, workingImage, rgbWeights, outWidth, outHeight);
+        initializePlanes(orientation);
     }
 
+    private void initializePlanes(Orientation orientation) {
+        this.orientation = orientation;
+        planeWidth = orientation == Orientation.VERTICAL ? inWidth : inHeight;
+        planeHeight = orientation == Orientation.VERTICAL ? inHeight : inWidth;
+        currentWidth = planeWidth;
+        startPass(orientation == Orientation.VERTICAL ? outWidth : outHeight);
+
+        // The greyScaled version of the working image is initialized by the first operation
+        pixels = toCarvingPlane(workingPixels);
+    }
+
+    /**
+     * Prepares the seams of a pass which changes the current plane width to outSize.
+     * The plane must be compact, so its width is the current width.
+     * A reduction removes at most half of the columns. An enlargement duplicates
+     * at most half of the columns in every round, so the seams of a round never
+     * share a pixel, and a larger enlargement starts its following rounds
+     * (see enlargeToTarget) from the enlarged plane.
+     */
+    private void startPass(int outSize) {
+        targetPlaneWidth = outSize;
+        outPlaneWidth = outSize > currentWidth ? Math.min(outSize, currentWidth + currentWidth / 2) : outSize;
+        numOfSeams = Math.abs(outPlaneWidth - currentWidth);
+
+        if (currentWidth < 2 | planeHeight < 2)
+            throw new RuntimeException("Can not apply seam carving: workingImage is too small");
+
+        if (numOfSeams > currentWidth / 2)
+            throw new RuntimeException("Can not apply seam carving: too many seams...");
+
+        // contains the x location on the original image (y is always the same)
+        originalXIndexes = ensureLength(originalXIndexes, planeHeight * planeWidth);
+        for (int y = 0; y < planeHeight; y++) {
+            for (int x = 0; x < planeWidth; x++) {
+                originalXIndexes[y * planeWidth + x] = x;
+            }
+        }
+        allSeams = new int[numOfSeams][];
+        previewPlane = null;
+        seamsSearched = false;
+        costMatrixReady = false;
+    }
+
+    private static int[] ensureLength(int[] array, int length) {
+        return array != null && array.length >= length ? array : new int[length];
+    }
+
+    private static long[] ensureLength(long[] array, int length) {
+        return array != null && array.length >= length ? array : new long[length];
+    }
+
+    /**
+     * Initializes the greyscale plane once, when an operation needs it, so its grey
+     * levels come out of the plane cache which is set after the construction.
+     */
     private void initializeGreyScaledImage() {
-        BufferedImage tempGreyScaledImage = greyscale();
-        greyScaledImage = new int[this.inHeight][this.inWidth];
-        forEach((y, x) -> greyScaledImage[y][x] = new Color(tempGreyScaledImage.getRGB(x, y)).getRed());
+        if (greyScaledImage != null)
+            return;
+
+        // The shared grey levels are read only, the carving plane is compacted in place
+        int[] greyLevels = sharedGreyscaleLevels();
+        greyScaledImage = orientation == Orientation.VERTICAL ? greyLevels.clone() : toCarvingPlane(greyLevels);
+    }
+
+    /**
+     * Gathers an image ordered plane in the order of the carving plane,
+     * for horizontal seams the carving plane (x, y) is the image (y, inHeight - 1 - x).
+     * @return - The image plane itself for vertical seams.
+     */
+    private int[] toCarvingPlane(int[] imagePlane) {
+        if (orientation == Orientation.VERTICAL)
+            return imagePlane;
+
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.GATHER);
+        int[] plane = new int[planeWidth * planeHeight];
+        for (int y = 0; y < planeHeight; y++) {
+            for (int x = 0; x < planeWidth; x++) {
+                plane[y * planeWidth + x] = imagePlane[(inHeight - 1 - x) * inWidth + y];
+            }
+        }
+        timer.stop();
+        return plane;
+    }
+
+    /**
+     * Builds an image out of the first width columns of a carving plane,
+     * rotating them back to the image orientation for horizontal seams.
+     */
+    private BufferedImage newCarvedImage(int[] plane, int stride, int width) {
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.GATHER);
+        if (orientation == Orientation.VERTICAL) {
+            BufferedImage image = newEmptyImage(width, planeHeight);
+            writePixels(image, plane, stride);
+            timer.stop();
+            return image;
+        }
+
+        int[] image = new int[planeHeight * width];
+        for (int y = 0; y < width; y++) {
+            for (int x = 0; x < planeHeight; x++) {
+                image[y * planeHeight + x] = plane[x * stride + width - 1 - y];
+            }
+        }
+        timer.stop();
+        return newImage(image, planeHeight, width);
     }
 
     //MARK: Methods
     public BufferedImage resize() {
+        initializeGreyScaledImage();
         return resizeOp.apply();
     }
 
+    /**
+     * Sets the number of threads used to calculate the cost matrix. Every band of
+     * rows is split into column tiles which are calculated concurrently, so the
+     * seams found are the same as with a single thread. The tiles run on the for
+     * each pool (see setForEachPool), the common pool by default, so the carvers
+     * of a server share the threads of its pool instead of starting their own.
+     * @param parallelism - Number of threads, 1 for a sequential calculation.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive");
+
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets how many seams are taken from every cost matrix calculation. The default
+     * of 1 is the exact algorithm; larger values take the cheapest non intersecting
+     * seams of the same cost matrix, trading seam quality for fewer passes.
+     * Use getSeamsCost() or measureApproximationQuality() to rate the result.
+     * The incremental update only applies to the exact algorithm.
+     * @param seamsPerPass - Seams per pass, or 0 to adapt it to the current width.
+     */
+    public void setSeamsPerPass(int seamsPerPass) {
+        if (seamsPerPass < 0)
+            throw new IllegalArgumentException("Seams per pass must not be negative");
+
+        this.seamsPerPass = seamsPerPass;
+    }
+
+    /**
+     * Enables the coarse to fine seam search: a luma pyramid of the given number of
+     * 2x reductions is built, every seam is found on its coarsest level, and then
+     * refined on the full resolution only inside a band around the upsampled path.
+     * The coarsest level is built once, and carved where the seams remove pixels,
+     * so a seam costs a fraction of the full resolution dynamic programming.
+     * Falls back to the exact search when the image is too small for the pyramid,
+     * when the band covers the whole width, or when no path fits in the band.
+     * The incremental update and multi seam passes take precedence over it.
+     * @param pyramidLevels - Number of 2x reductions, 0 for the exact search.
+     * @param bandWidth - Columns searched on each side of the upsampled path,
+     *                  at least 2^pyramidLevels so the bands of neighbouring rows overlap.
+     */
+    public void setPyramidSearch(int pyramidLevels, int bandWidth) {
+        if (pyramidLevels < 0 | bandWidth < 0)
+            throw new IllegalArgumentException("Pyramid levels and band width must not be negative");
+
+        this.pyramidLevels = pyramidLevels;
+        this.pyramidBandWidth = Math.max(bandWidth, 1 << pyramidLevels);
+    }
+
+    /**
+     * @return - The sum of the forward energy costs of the seams found by the last run,
+     * each one along its path on the plane it was removed from.
+     */
+    public long getSeamsCost() {
+        return seamsCost;
+    }
+
+    /**
+     * Finds the seams again with the settings of this carver, and compares the cost
+     * of every seam with the cost of the exact seam of the plane it is removed from,
+     * the seam the exact algorithm would remove instead. The seams of a pass are
+     * removed one at a time for the measurement. Both costs are the forward energy
+     * along the paths, so the approximation can never be rated better than exact.
+     * @return - The exact seams cost divided by the seams cost, from 0 to 1,
+     * 1.0 means every seam is as cheap as the exact one.
+     */
+    public double measureApproximationQuality() {
+        if (retargeting)
+            throw new RuntimeException("Can not measure the seams of a two dimensional retargeting session");
+
+        if (numOfSeams == 0)
+            return 1.0;
+
+        SeamsCarver measured = new SeamsCarver(logger, workingImage, outPlaneWidth, rgbWeights, orientation);
+        measured.setParallelism(parallelism);
+        measured.setForEachPool(getForEachPool());
+        measured.setIncrementalUpdate(incrementalUpdate);
+        measured.setSeamsPerPass(seamsPerPass);
+        measured.setPyramidSearch(pyramidLevels, pyramidBandWidth);
+        measured.measureSeams = true;
+        measured.findKSeams();
+
+        long cost = measured.seamsCost;
+        long minimalCost = measured.minimalSeamsCost;
+        double quality = cost == 0 ? 1.0 : (double) minimalCost / cost;
+        logger.log(Level.INFO, () -> "seams cost: " + cost + ", exact seams cost: " + minimalCost
+                + ", quality: " + quality);
+        return quality;
+    }
+
+    /**
+     * Keeps the full cost matrix between seams and after every seam removal
+     * recalculates only the cells whose energy or parent choice can change.
+     * The seams found are exactly the same as with a full recalculation.
+     * @param incrementalUpdate - true in order to update the cost matrix incrementally.
+     */
+    public void setIncrementalUpdate(boolean incrementalUpdate) {
+        this.incrementalUpdate = incrementalUpdate;
+    }
+
+    /**
+     * When the incremental update is on, compares every incrementally updated
+     * cost matrix with a full recalculation and fails on the first difference.
+     * @param verifyIncrementalUpdate - true in order to verify every update.
+     */
+    public void setVerifyIncrementalUpdate(boolean verifyIncrementalUpdate) {
+        this.verifyIncrementalUpdate = verifyIncrementalUpdate;
+    }
+
+    /**
+     * Reports the seams found so far after every seam, or every multi seam pass.
+     * The seams search also checks the interrupt flag of its thread before every
+     * seam, and stops with a CancellationException once it is set.
+     * @param progressListener - Called on the carving thread, or null for no reports.
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Emits an intermediate image every everySeams seams or every everyMillis
+     * milliseconds, whichever comes first. While carving, the preview is the carved
+     * image of the current size, which is gathered out of the compact pixels plane.
+     * Otherwise (enlargement and showSeams) it is the image with the seams found so
+     * far colored, only the new seams are colored in a plane kept between previews.
+     * @param previewListener - Called on the carving thread, or null for no previews.
+     * @param everySeams - Seams between previews, 0 for no seams limit.
+     * @param everyMillis - Milliseconds between previews, 0 for no time limit.
+     */
+    public void setPreviewListener(PreviewListener previewListener, int everySeams, long everyMillis) {
+        if (everySeams < 0 | everyMillis < 0)
+            throw new IllegalArgumentException("Preview intervals must not be negative");
+        if (previewListener != null && everySeams == 0 && everyMillis == 0)
+            throw new IllegalArgumentException("At least one preview interval must be positive");
+
+        this.previewListener = previewListener;
+        previewEverySeams = everySeams;
+        previewEveryNanos = everyMillis * 1_000_000L;
+    }
+
+    /**
+     * When a two dimensional retargeting session reduces both the width and the height,
+     * alternates between blocks of vertical and horizontal seams instead of carving
+     * the whole width first. The next block is taken in the direction which is
+     * relatively further from its target, so both directions progress together.
+     * @param interleavedSeams - Seams per block, 0 to carve the width first.
+     */
+    public void setInterleavedSeams(int interleavedSeams) {
+        if (interleavedSeams < 0)
+            throw new IllegalArgumentException("Interleaved seams must not be negative");
+
+        this.interleavedSeams = interleavedSeams;
+    }
+
     //MARK: Unimplemented methods
     private BufferedImage reduceImageWidth() {
-        BufferedImage reducedSizeImage = newEmptyOutputSizedImage();
+        reducePlane();
+
+        // After finding K seams, the left part of every row in the pixels
+        // plane holds the pixels of the reduced size working image.
+        return newCarvedImage(pixels, planeWidth, outPlaneWidth);
+    }
+
+    private void reducePlane() {
+        if (pixels == workingPixels) {
+            pixels = workingPixels.clone();
+        }
+        carvePixels = true;
         findKSeams();
+    }
+
+    private BufferedImage retargetImage() {
+        int widthSeams = inWidth - outWidth;
+        int heightSeams = inHeight - outHeight;
+        if (interleavedSeams > 0 && widthSeams > 0 && heightSeams > 0) {
+            reduceInterleaved(widthSeams, heightSeams);
+        } else {
+            carvePlane(heightSeams != 0);
+            if (heightSeams != 0) {
+                switchOrientation(Orientation.HORIZONTAL);
+                startPass(outHeight);
+                carvePlane(false);
+            }
+        }
+
+        return newCarvedImage(pixels, planeWidth, currentWidth);
+    }
+
+    private void carvePlane(boolean keepGreyScaledImage) {
+        if (outPlaneWidth < currentWidth)
+            reducePlane();
+        else if (outPlaneWidth > currentWidth)
+            enlargeToTarget(keepGreyScaledImage);
+    }
+
+    private void reduceInterleaved(int widthSeams, int heightSeams) {
+        int widthSeamsLeft = widthSeams;
+        int heightSeamsLeft = heightSeams;
+        while (widthSeamsLeft + heightSeamsLeft > 0) {
+            boolean vertical = (long) widthSeamsLeft * heightSeams >= (long) heightSeamsLeft * widthSeams;
+            int blockSeams = Math.min(interleavedSeams, vertical ? widthSeamsLeft : heightSeamsLeft);
+            this.logger.log(Level.INFO, () -> "carving a block of " + blockSeams
+                    + (vertical ? " vertical" : " horizontal") + " seams");
+
+            switchOrientation(vertical ? Orientation.VERTICAL : Orientation.HORIZONTAL);
+            startPass(currentWidth - blockSeams);
+            reducePlane();
+            if (vertical) {
+                widthSeamsLeft -= blockSeams;
+            } else {
+                heightSeamsLeft -= blockSeams;
+            }
+        }
+    }
+
+    /**
+     * Transposes the current greyscale and pixel planes into the carving plane layout
+     * of the given orientation, which is compact (its width is the current width).
+     * The vertical plane (x, y) is the image (x, y), and the horizontal plane (x, y)
+     * is the image (y, imageHeight - 1 - x).
+     */
+    private void switchOrientation(Orientation orientation) {
+        if (this.orientation == orientation)
+            return;
 
-        // After finding K seams, transformMatrix represents the state
-        // of all the pixels for the reduced size working image.
-        setForEachParameters(outWidth, outHeight);
-        forEach((y, x) -> {
-            int mappedX = transformMatrix[y][x];
-            int colorFromOriginal = workingImage.getRGB(mappedX, y);
-            reducedSizeImage.setRGB(x, y, colorFromOriginal);
-        });
+        this.logger.log(Level.INFO, () -> "transposing the planes for " + orientation.toString().toLowerCase() + " seams");
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.GATHER);
+        int width = planeHeight;
+        int height = currentWidth;
+        int[] greyPlane = ensureLength(spareGreyScaledImage, width * height);
+        int[] pixelsPlane = ensureLength(sparePixels, width * height);
+        for (int y = 0; y < height; y++) {
+            // Walks a column of the current plane, upwards for horizontal seams
+            int index = orientation == Orientation.HORIZONTAL
+                    ? (planeHeight - 1) * planeWidth + y
+                    : currentWidth - 1 - y;
+            int step = orientation == Orientation.HORIZONTAL ? -planeWidth : planeWidth;
+            for (int x = 0; x < width; x++, index += step) {
+                greyPlane[y * width + x] = greyScaledImage[index];
+                pixelsPlane[y * width + x] = pixels[index];
+            }
+        }
 
-        return reducedSizeImage;
+        // The working image pixels are never used as a spare plane
+        spareGreyScaledImage = greyScaledImage;
+        sparePixels = pixels == workingPixels ? null : pixels;
+        greyScaledImage = greyPlane;
+        pixels = pixelsPlane;
+        this.orientation = orientation;
+        planeWidth = width;
+        planeHeight = height;
+        currentWidth = width;
+        coarseGrey = null;
+        timer.stop();
     }
 
     private void findKSeams() {
-        this.logger.log("finding " + this.numOfSeams + " minimal seams");
-        for (int i = 0; i < numOfSeams; i++) {
-            this.logger.log("finding seam no: " + (i + 1));
-            findSeam(i);
-            shiftLeftTransformMatrix(i);
+        initializeGreyScaledImage();
+        this.logger.log(Level.INFO, () -> "finding " + this.numOfSeams + " minimal seams");
+        boolean exactPasses = seamsPerPass == 1;
+
+        // DP buffers are allocated once and reused by every seam, and by the
+        // following passes of a retargeting session as long as they are large enough
+        minParentsPaths = ensureLength(minParentsPaths, planeHeight * planeWidth);
+        seamPath = ensureLength(seamPath, planeHeight);
+        if (incrementalUpdate && exactPasses) {
+            costMatrix = ensureLength(costMatrix, planeHeight * planeWidth);
+            previousCosts = ensureLength(previousCosts, planeWidth);
+        }
+
+        // Rolling rows of the cost matrix, a band of rows is kept for the parallel tiling
+        costBufferRows = parallelism > 1 ? TILE_ROWS + 1 : 2;
+        if (!(incrementalUpdate && exactPasses)) {
+            costRows = ensureLength(costRows, costBufferRows * planeWidth);
+        }
+        if (!exactPasses) {
+            takenPixels = ensureLength(takenPixels, planeHeight * planeWidth);
+            bottomCandidates = ensureLength(bottomCandidates, planeWidth);
+            rowSeamsX = ensureLength(rowSeamsX, numOfSeams);
+            if (passSeamsRow == null || passSeamsRow.length < planeWidth) {
+                passSeamsAbove = new int[planeWidth];
+                passSeamsRow = new int[planeWidth];
+                Arrays.fill(passSeamsAbove, -1);
+                Arrays.fill(passSeamsRow, -1);
+            }
+            if (passSeamPaths == null || passSeamPaths.length < numOfSeams) {
+                passSeamPaths = new int[numOfSeams][];
+            }
+            passSeamPaths[0] = seamPath;
+        }
+        if (!retargeting) {
+            seamsCost = 0;
+        }
+        seamsSearched = true;
+        if (seamsDone == 0) {
+            lastPreviewNanos = System.nanoTime();
+        }
+
+        int i = 0;
+        while (i < numOfSeams) {
+            if (Thread.currentThread().isInterrupted())
+                throw new CancellationException("Seam carving has been cancelled");
+
+            int seamsInPass = seamsInNextPass(numOfSeams - i);
+            int seamNumber = i + 1;
+            this.logger.log(Level.DEBUG, () -> "finding seam no: " + seamNumber
+                    + (seamsInPass > 1 ? " (up to " + seamsInPass + " seams in this pass)" : ""));
+            if (seamsInPass == 1) {
+                findSeam(i);
+                removeSeam();
+                i++;
+                seamsDone++;
+            } else {
+                int seamsFound = findSeamsPass(i, seamsInPass);
+                if (measureSeams) {
+                    removeMeasuredSeams(seamsFound);
+                } else {
+                    removeSeams(seamsFound);
+                }
+                i += seamsFound;
+                seamsDone += seamsFound;
+            }
+            if (progressListener != null) {
+                progressListener.seamsDone(seamsDone, totalSeams);
+            }
+            if (previewListener != null && seamsDone < totalSeams && previewDue()) {
+                previewListener.preview(newPreview(i), seamsDone, totalSeams);
+                lastPreviewSeams = seamsDone;
+                lastPreviewNanos = System.nanoTime();
+            }
+        }
+    }
+
+    private boolean previewDue() {
+        return (previewEverySeams > 0 && seamsDone - lastPreviewSeams >= previewEverySeams)
+                || (previewEveryNanos > 0 && System.nanoTime() - lastPreviewNanos >= previewEveryNanos);
+    }
+
+    /**
+     * Builds a preview out of the current state of the pass.
+     * @param passSeams - Seams found so far in the current pass.
+     */
+    private BufferedImage newPreview(int passSeams) {
+        if (carvePixels)
+            return newCarvedImage(pixels, planeWidth, currentWidth);
+
+        // The pixels plane is not carved, only the new seams are colored
+        if (previewPlane == null) {
+            previewPlane = pixels.clone();
+            previewPlaneSeams = 0;
         }
+        for (; previewPlaneSeams < passSeams; previewPlaneSeams++) {
+            int[] seam = allSeams[previewPlaneSeams];
+            for (int y = 0; y < planeHeight; y++) {
+                previewPlane[y * planeWidth + seam[y]] = previewSeamRGB;
+            }
+        }
+        return newCarvedImage(previewPlane, planeWidth, planeWidth);
     }
 
     private void findSeam(int currentSeamIndex) {
-        long[][] currCostMatrix = getCostMatrix();
+        // Only the coarse to fine search may miss the exact seam
+        boolean exactSeam = (incrementalUpdate && seamsPerPass == 1) || pyramidLevels == 0;
+        if (measureSeams && !exactSeam) {
+            minimalSeamsCost += minimalSeamCost();
+        }
 
-        // find minimal cost pixel at bottom row of matrix
-        this.logger.log("looking for the X index of the bottom row with minimal cost");
-        int minimalXIndex = 0;
-        for (int x = 0; x < currCostMatrix[0].length; x++) {
-            if (currCostMatrix[currCostMatrix.length - 1][x]
-                    < currCostMatrix[currCostMatrix.length - 1][minimalXIndex]) {
+        long[] bottomCostRow;
+        int bottomCostOffset;
+        int bottomFromX = 0;
+        int bottomToX = currentWidth - 1;
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.DP);
+        if (incrementalUpdate && seamsPerPass == 1) {
+            updateCostMatrix();
+            bottomCostRow = costMatrix;
+            bottomCostOffset = (planeHeight - 1) * planeWidth;
+        } else if (pyramidLevels > 0 && calculateBandedCostMatrix()) {
+            bottomCostRow = costRows;
+            bottomCostOffset = ((planeHeight - 1) % costBufferRows) * planeWidth;
+            bottomFromX = bandFromX[planeHeight - 1];
+            bottomToX = bandToX[planeHeight - 1];
+        } else {
+            bottomCostRow = calculateCostMatrix();
+            bottomCostOffset = ((planeHeight - 1) % costBufferRows) * planeWidth;
+        }
+        timer.stop();
 
+        // find minimal cost pixel at bottom row of matrix
+        timer = PhaseMetrics.time(Phase.BACKTRACK);
+        this.logger.log(Level.DEBUG, "looking for the X index of the bottom row with minimal cost");
+        int minimalXIndex = bottomFromX;
+        for (int x = bottomFromX + 1; x <= bottomToX; x++) {
+            if (bottomCostRow[bottomCostOffset + x] < bottomCostRow[bottomCostOffset + minimalXIndex]) {
                 minimalXIndex = x;
             }
         }
 
-        // Store the seam data in a structure including:
-        // X index of the original image
-        // X index of the local state for the TransformationMatrix
-        int originalImageMinX = transformMatrix[inHeight - 1][minimalXIndex];
-        this.logger.log("minX = " + originalImageMinX);
-        this.logger.log("constructing the path of minimal seam");
-        allSeams[currentSeamIndex][inHeight - 1] =
-                new SeamData(minimalXIndex, originalImageMinX);
+        // Store the seam as a packed path of original image X indexes,
+        // the local X indexes are kept in seamPath for the seam removal.
+        int[] originalPath = new int[planeHeight];
+        int bottomOffset = (planeHeight - 1) * planeWidth;
+        seamPath[planeHeight - 1] = minimalXIndex;
+        originalPath[planeHeight - 1] = originalXIndexes[bottomOffset + minimalXIndex];
+        this.logger.log(Level.DEBUG, () -> "minX = " + originalPath[planeHeight - 1]);
+        this.logger.log(Level.DEBUG, "constructing the path of minimal seam");
 
         // Continue constructing the seam along the Y-axis.
-        this.logger.log("stores the path.");
-        for (int y = inHeight - 1; y > 0; y--) {
-            int nextXIndexUp = minParentsPaths[y][minimalXIndex];
-            allSeams[currentSeamIndex][y - 1] = new SeamData(nextXIndexUp, transformMatrix[y - 1][nextXIndexUp]);
+        this.logger.log(Level.DEBUG, "stores the path.");
+        for (int y = planeHeight - 1; y > 0; y--) {
+            int nextXIndexUp = minParentsPaths[y * planeWidth + minimalXIndex];
+            seamPath[y - 1] = nextXIndexUp;
+            originalPath[y - 1] = originalXIndexes[(y - 1) * planeWidth + nextXIndexUp];
             minimalXIndex = nextXIndexUp;
         }
+
+        allSeams[currentSeamIndex] = originalPath;
+        long seamCost = bottomCostRow[bottomCostOffset + seamPath[planeHeight - 1]];
+        seamsCost += seamCost;
+        if (measureSeams && exactSeam) {
+            minimalSeamsCost += seamCost;
+        }
+        timer.stop();
     }
 
-    private void shiftLeftTransformMatrix(int currentSeamIndex) {
-        int currentTransformWidth = inWidth - (currentSeamIndex + 1);
-        int[][] updatedTransformMatrix = new int[inHeight][currentTransformWidth];
+    private int seamsInNextPass(int seamsLeft) {
+        int seams = seamsPerPass > 0 ? seamsPerPass : currentWidth / ADAPTIVE_COLUMNS_PER_SEAM;
+        return Math.max(1, Math.min(seams, seamsLeft));
+    }
 
-        // Construct a smaller version of the transform matrix based on seam data
-        this.logger.log("removing seam");
-        setForEachParameters(currentTransformWidth, inHeight);
-        forEach((y, x) -> {
-            // min cost pixel from current seam that will be skipped
-            int skipIndex = allSeams[currentSeamIndex][y].getLocalReducedImageX();
-            if (x >= skipIndex) {
-                updatedTransformMatrix[y][x] = transformMatrix[y][x + 1];
-            } else {
-                updatedTransformMatrix[y][x] = transformMatrix[y][x];
+    /**
+     * Takes up to maxSeams seams out of a single cost matrix. The bottom row pixels
+     * are visited from the cheapest one, and the path of each is traced back
+     * through the parents. A path which reaches a pixel of a seam already taken
+     * in this pass is dropped, so the seams of a pass never share a pixel.
+     * @return - The number of seams found, at least one.
+     */
+    private int findSeamsPass(int firstSeamIndex, int maxSeams) {
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.DP);
+        long[] costs = calculateCostMatrix();
+        timer.stop();
+        timer = PhaseMetrics.time(Phase.BACKTRACK);
+        int bottomCostOffset = ((planeHeight - 1) % costBufferRows) * planeWidth;
+
+        // Sort the bottom row by cost, and by X index between equal costs
+        for (int x = 0; x < currentWidth; x++) {
+            bottomCandidates[x] = costs[bottomCostOffset + x] * currentWidth + x;
+        }
+        Arrays.sort(bottomCandidates, 0, currentWidth);
+
+        passStamp++;
+        int seamsFound = 0;
+        for (int c = 0; c < currentWidth && seamsFound < maxSeams; c++) {
+            int bottomX = (int) (bottomCandidates[c] % currentWidth);
+            if (passSeamPaths[seamsFound] == null || passSeamPaths[seamsFound].length < planeHeight) {
+                passSeamPaths[seamsFound] = new int[planeHeight];
             }
-        });
+            int[] path = passSeamPaths[seamsFound];
+            if (!traceSeam(bottomX, path))
+                continue;
 
-        // Update the current state of the transform matrix
-        transformMatrix = updatedTransformMatrix;
+            int[] originalPath = new int[planeHeight];
+            for (int y = 0; y < planeHeight; y++) {
+                int index = y * planeWidth + path[y];
+                takenPixels[index] = passStamp;
+                originalPath[y] = originalXIndexes[index];
+            }
+            allSeams[firstSeamIndex + seamsFound] = originalPath;
+            seamsFound++;
+        }
+        seamsCost += passSeamsCost(seamsFound);
+
+        timer.stop();
+        int passSeams = seamsFound;
+        this.logger.log(Level.DEBUG, () -> passSeams + " seams found in one pass");
+        return seamsFound;
     }
 
-    private long[][] getCostMatrix() {
-        this.logger.log("calculating the costs matrix");
-        long[][] tempCostMatrix = new long[transformMatrix.length][transformMatrix[0].length];
+    /**
+     * The bottom row costs of a pass are those of the plane it started from, while
+     * every seam but the first is removed from a plane its former seams were removed
+     * from. Each seam is rated as the exact algorithm rates its seams instead: by the
+     * forward energy along its path, on the plane without the former seams of the pass.
+     * @return - The sum of the costs of the seams of the pass.
+     */
+    private long passSeamsCost(int seamsCount) {
+        long cost = 0;
+        for (int y = 0; y < planeHeight; y++) {
+            int rowOffset = y * planeWidth;
+            int aboveOffset = rowOffset - planeWidth;
+            int[] above = passSeamsAbove;
+            int[] row = passSeamsRow;
+            for (int k = 0; k < seamsCount; k++) {
+                row[passSeamPaths[k][y]] = k;
+            }
 
-        // init cost matrix clone for fast path recovery in seam construction
-        minParentsPaths = new int[transformMatrix.length][transformMatrix[0].length];
-        setForEachParameters(transformMatrix[0].length, transformMatrix.length);
+            for (int k = 0; k < seamsCount; k++) {
+                int x = passSeamPaths[k][y];
+                // The neighbours of the pixel once the former seams are removed
+                int leftX = keptX(row, k, x - 1, -1);
+                int rightX = keptX(row, k, x + 1, 1);
+                boolean hasLeft = leftX >= 0;
+                boolean hasRight = rightX < currentWidth;
+                int greyLeft = hasLeft ? greyScaledImage[rowOffset + leftX] : 0;
+                int greyRight = hasRight ? greyScaledImage[rowOffset + rightX] : 0;
+                cost += Math.abs(greyScaledImage[rowOffset + x] - (hasRight ? greyRight : greyLeft));
+                if (y == 0)
+                    continue;
 
-        // update the cost matrix values in Mxy
-        forEach((y, x) -> {
-            int mappedX = transformMatrix[y][x];
-            int nextX = x + 1 <= transformMatrix[0].length - 1 ? x + 1 : x - 1;
-            int pixelEnergy = Math.abs(greyScaledImage[y][mappedX]
-                    - greyScaledImage[y][transformMatrix[y][nextX]]);
+                cost += !hasLeft ? greyRight : !hasRight ? greyLeft : Math.abs(greyRight - greyLeft);
 
-            if (y == 0) {
-                tempCostMatrix[y][x] = pixelEnergy;
-            } else {
-                MinimalCost min = getMinimalCost(tempCostMatrix, y, x);
-                minParentsPaths[y][x] = min.getParentXIndex();
-                tempCostMatrix[y][x] = pixelEnergy + min.getCost();
+                // The parent step, unless the path crosses a former seam which
+                // takes the diagonal step the other way
+                int parentX = passSeamPaths[k][y - 1];
+                int step = parentX - x;
+                int crossing = above[x];
+                if (step != 0 && crossing >= 0 && crossing < k && row[parentX] == crossing) {
+                    step = 0;
+                }
+                if (step != 0) {
+                    // The pixel above, in the column of the pixel once the former seams are removed
+                    int upX = keptX(above, k, parentX - step, -step);
+                    int greyUp = greyScaledImage[aboveOffset + upX];
+                    cost += Math.abs(greyUp - (step < 0 ? greyLeft : greyRight));
+                }
             }
-        });
-        return tempCostMatrix;
+
+            if (y > 0) {
+                for (int k = 0; k < seamsCount; k++) {
+                    above[passSeamPaths[k][y - 1]] = -1;
+                }
+            }
+            passSeamsAbove = row;
+            passSeamsRow = above;
+        }
+        for (int k = 0; k < seamsCount; k++) {
+            passSeamsAbove[passSeamPaths[k][planeHeight - 1]] = -1;
+        }
+        return cost;
     }
 
-    private MinimalCost getMinimalCost(long[][] tempCostMatrix, Integer y, Integer x) {
-        int cV, cL, cR;
-        cV = getInitialCV(y, x);
-        cL = calculateCL(y, x, cV);
-        cR = calculateCR(y, x, cV);
+    /**
+     * @return - The first X index from x on, in the direction of step, which is not
+     * a pixel of the seams of the pass before the given one.
+     */
+    private static int keptX(int[] rowSeams, int seam, int x, int step) {
+        while (x >= 0 && x < rowSeams.length && rowSeams[x] >= 0 && rowSeams[x] < seam) {
+            x += step;
+        }
+        return x;
+    }
 
-        long left = x - 1 < 0 ? Long.MAX_VALUE : tempCostMatrix[y - 1][x - 1] + cL;
-        long up = tempCostMatrix[y - 1][x] + cV;
-        long right = x + 1 > tempCostMatrix[0].length - 1 ? Long.MAX_VALUE : tempCostMatrix[y - 1][x + 1] + cR;
+    private boolean traceSeam(int bottomX, int[] path) {
+        int x = bottomX;
+        for (int y = planeHeight - 1; y >= 0; y--) {
+            if (takenPixels[y * planeWidth + x] == passStamp)
+                return false;
 
-        // Store the minimal path direction for fast path recovery
-        int parentX = x;
-        long minCost = Math.min(up, Math.min(left, right));
-        if (minCost == right && x + 1 <= transformMatrix[0].length - 1) {
-            parentX += 1;
-        } else if (minCost == left && x - 1 >= 0) {
-            parentX -= 1;
+            path[y] = x;
+            if (y > 0) {
+                x = minParentsPaths[y * planeWidth + x];
+            }
         }
+        return true;
+    }
 
-        return new MinimalCost(minCost, parentX);
+    /**
+     * Removes the seams of a pass one at a time, in the order they were found,
+     * adding the cost of the exact seam of every plane to the minimal seams cost.
+     */
+    private void removeMeasuredSeams(int seamsCount) {
+        // The X indexes of every seam once the former seams of the pass are removed
+        int[][] paths = new int[seamsCount][planeHeight];
+        for (int k = 0; k < seamsCount; k++) {
+            for (int y = 0; y < planeHeight; y++) {
+                int x = passSeamPaths[k][y];
+                int formerSeamsLeft = 0;
+                for (int i = 0; i < k; i++) {
+                    if (passSeamPaths[i][y] < x) {
+                        formerSeamsLeft++;
+                    }
+                }
+                paths[k][y] = x - formerSeamsLeft;
+            }
+        }
+
+        for (int[] path : paths) {
+            minimalSeamsCost += minimalSeamCost();
+            System.arraycopy(path, 0, seamPath, 0, planeHeight);
+            removeSeam();
+        }
+        coarseGrey = null;
     }
 
-    private int calculateCR(Integer y, Integer x, int cV) {
-        int cR;
-        if (x + 1 <= transformMatrix[0].length - 1) {
-            cR = cV + Math.abs(greyScaledImage[y - 1][transformMatrix[y - 1][x]]
-                    - greyScaledImage[y][transformMatrix[y][x + 1]]);
-        } else {
-            cR = 0;
+    /**
+     * @return - The cost of the exact seam of the current plane.
+     */
+    private long minimalSeamCost() {
+        long[] costs = calculateCostMatrix();
+        int bottomCostOffset = ((planeHeight - 1) % costBufferRows) * planeWidth;
+        long minimalCost = costs[bottomCostOffset];
+        for (int x = 1; x < currentWidth; x++) {
+            minimalCost = Math.min(minimalCost, costs[bottomCostOffset + x]);
         }
-        return cR;
+        return minimalCost;
     }
 
-    private int calculateCL(Integer y, Integer x, int cV) {
-        int cL;
-        if (x - 1 >= 0) {
-            cL = cV + Math.abs(greyScaledImage[y - 1][transformMatrix[y - 1][x]]
-                    - greyScaledImage[y][transformMatrix[y][x - 1]]);
-        } else {
-            cL = 0;
+    private void removeSeams(int seamsCount) {
+        // Every row keeps the segments between its seam pixels, from left to right
+        this.logger.log(Level.DEBUG, () -> "removing " + seamsCount + " seams");
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.COMPACTION);
+        for (int y = 0; y < planeHeight; y++) {
+            for (int k = 0; k < seamsCount; k++) {
+                rowSeamsX[k] = passSeamPaths[k][y];
+            }
+            Arrays.sort(rowSeamsX, 0, seamsCount);
+
+            int rowOffset = y * planeWidth;
+            int targetX = rowSeamsX[0];
+            for (int k = 0; k < seamsCount; k++) {
+                int segmentFromX = rowSeamsX[k] + 1;
+                int segmentLength = (k + 1 < seamsCount ? rowSeamsX[k + 1] : currentWidth) - segmentFromX;
+                System.arraycopy(greyScaledImage, rowOffset + segmentFromX, greyScaledImage, rowOffset + targetX, segmentLength);
+                System.arraycopy(originalXIndexes, rowOffset + segmentFromX, originalXIndexes, rowOffset + targetX, segmentLength);
+                if (carvePixels) {
+                    System.arraycopy(pixels, rowOffset + segmentFromX, pixels, rowOffset + targetX, segmentLength);
+                }
+                targetX += segmentLength;
+            }
         }
-        return cL;
+
+        currentWidth -= seamsCount;
+        // The coarse level follows single seams, it is built again when needed
+        coarseGrey = null;
+        timer.stop();
+    }
+
+    private void removeSeam() {
+        // Shift the tail of every row one pixel to the left, over the seam pixel
+        this.logger.log(Level.DEBUG, "removing seam");
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.COMPACTION);
+        for (int y = 0; y < planeHeight; y++) {
+            int seamIndex = y * planeWidth + seamPath[y];
+            int tailLength = currentWidth - seamPath[y] - 1;
+            System.arraycopy(greyScaledImage, seamIndex + 1, greyScaledImage, seamIndex, tailLength);
+            System.arraycopy(originalXIndexes, seamIndex + 1, originalXIndexes, seamIndex, tailLength);
+            if (carvePixels) {
+                System.arraycopy(pixels, seamIndex + 1, pixels, seamIndex, tailLength);
+            }
+            if (costMatrixReady) {
+                // The shifted cells keep their costs, and their parents are shifted as well
+                System.arraycopy(costMatrix, seamIndex + 1, costMatrix, seamIndex, tailLength);
+                System.arraycopy(minParentsPaths, seamIndex + 1, minParentsPaths, seamIndex, tailLength);
+                if (y > 0) {
+                    for (int i = seamIndex; i < seamIndex + tailLength; i++) {
+                        minParentsPaths[i]--;
+                    }
+                }
+            }
+        }
+
+        currentWidth--;
+        if (coarseGrey != null) {
+            carveCoarseLevel();
+        }
+        timer.stop();
+    }
+
+    /**
+     * Runs the forward energy dynamic programming over the current state of the
+     * greyscale plane. Only a few rolling cost rows are kept in costRows,
+     * the parent of every pixel is stored in minParentsPaths for the path recovery.
+     * @return - The rolling cost rows, including the cost row of the bottom row.
+     */
+    private long[] calculateCostMatrix() {
+        this.logger.log(Level.DEBUG, "calculating the costs matrix");
+        calculateCostRows(costRows, costBufferRows, minParentsPaths);
+        return costRows;
     }
 
-    private int getInitialCV(Integer y, Integer x) {
-        int cV;
-        if (x - 1 < 0) {
-            cV = greyScaledImage[y][transformMatrix[y][x + 1]];
-        } else if (x + 1 > transformMatrix[0].length - 1) {
-            cV = greyScaledImage[y][transformMatrix[y][x - 1]];
+    /**
+     * Calculates the costs of all the rows, row y is stored at
+     * (y % bufferRows) * planeWidth, so the buffer can either hold the whole matrix
+     * or only the last rows of it. When the parallelism is above 1 and the rows
+     * are wide enough, the rows are calculated in parallel tiles on the for each pool.
+     */
+    private void calculateCostRows(long[] costs, int bufferRows, int[] parents) {
+        int lastX = currentWidth - 1;
+        calculateFirstCostRow(0, lastX, costs, 0);
+
+        int tiles = Math.min(parallelism, currentWidth / MIN_TILE_WIDTH);
+        if (tiles < 2) {
+            for (int y = 1; y < planeHeight; y++) {
+                calculateCostRow(y, 0, lastX, costs, ((y - 1) % bufferRows) * planeWidth,
+                        costs, (y % bufferRows) * planeWidth, parents);
+            }
         } else {
-            cV = Math.abs(greyScaledImage[y][transformMatrix[y][x + 1]]
-                    - greyScaledImage[y][transformMatrix[y][x - 1]]);
+            getForEachPool().invoke(ForkJoinTask.adapt(() -> calculateTiledCostRows(costs, bufferRows, parents, tiles)));
+        }
+    }
+
+    /**
+     * Calculates the rows in bands of TILE_ROWS rows. Each band is split into
+     * column tiles, and every tile first calculates a trapezoid which shrinks by
+     * one cell on each inner side per row, since it only depends on the band above.
+     * Then the triangles left between every two neighbouring trapezoids are
+     * calculated, so there are two barriers per band instead of one per row.
+     * Every cell is calculated exactly once, by the same code as the sequential path.
+     */
+    private void calculateTiledCostRows(long[] costs, int bufferRows, int[] parents, int tiles) {
+        int lastX = currentWidth - 1;
+        int bandRows = Math.min(TILE_ROWS, bufferRows - 1);
+        int[] bounds = new int[tiles + 1];
+        for (int i = 0; i <= tiles; i++) {
+            bounds[i] = (int) ((long) i * currentWidth / tiles);
+        }
+
+        ForkJoinTask<?>[] trapezoids = new ForkJoinTask<?>[tiles];
+        ForkJoinTask<?>[] triangles = new ForkJoinTask<?>[tiles - 1];
+        for (int fromY = 1; fromY < planeHeight; fromY += bandRows) {
+            int bandFromY = fromY;
+            int bandToY = Math.min(planeHeight - 1, fromY + bandRows - 1);
+
+            for (int i = 0; i < tiles; i++) {
+                int tileFromX = bounds[i];
+                int tileToX = bounds[i + 1] - 1;
+                boolean firstTile = i == 0;
+                boolean lastTile = i == tiles - 1;
+                trapezoids[i] = ForkJoinTask.adapt(() -> {
+                    for (int y = bandFromY; y <= bandToY; y++) {
+                        int shrink = y - bandFromY;
+                        calculateCostRow(y, firstTile ? 0 : tileFromX + shrink, lastTile ? lastX : tileToX - shrink,
+                                costs, ((y - 1) % bufferRows) * planeWidth, costs, (y % bufferRows) * planeWidth, parents);
+                    }
+                });
+            }
+            ForkJoinTask.invokeAll(trapezoids);
+
+            for (int i = 1; i < tiles; i++) {
+                int bound = bounds[i];
+                triangles[i - 1] = ForkJoinTask.adapt(() -> {
+                    for (int y = bandFromY + 1; y <= bandToY; y++) {
+                        int grow = y - bandFromY;
+                        calculateCostRow(y, bound - grow, bound + grow - 1,
+                                costs, ((y - 1) % bufferRows) * planeWidth, costs, (y % bufferRows) * planeWidth, parents);
+                    }
+                });
+            }
+            ForkJoinTask.invokeAll(triangles);
+        }
+    }
+
+    /**
+     * Finds the seam on the coarsest pyramid level, and calculates the full resolution
+     * costs only inside a band around its upsampled path. The cells outside the band
+     * are treated as unreachable, so every path found stays inside the band.
+     * @return - false if the coarse to fine search does not apply and the
+     * full cost matrix should be calculated instead.
+     */
+    private boolean calculateBandedCostMatrix() {
+        int scale = 1 << pyramidLevels;
+        if ((currentWidth >> pyramidLevels) < 3 || (planeHeight >> pyramidLevels) < 2
+                || 2 * pyramidBandWidth + 1 >= currentWidth)
+            return false;
+
+        if (coarseGrey == null) {
+            buildCoarseLevel();
+        }
+        this.logger.log(Level.DEBUG, () -> "calculating the costs matrix on a " + coarseWidth + "x" + coarseHeight + " pyramid level");
+        int coarseLastX = coarseWidth - 1;
+        PixelKernels.firstCostRow(coarseGrey, coarseWidth, 0, coarseLastX, coarseCosts, 0);
+        for (int y = 1; y < coarseHeight; y++) {
+            PixelKernels.costRow(coarseGrey, coarseStride, coarseWidth, y, 0, coarseLastX,
+                    coarseCosts, ((y - 1) & 1) * coarseStride, coarseCosts, (y & 1) * coarseStride, coarseParents);
+        }
+
+        int coarseBottomOffset = ((coarseHeight - 1) & 1) * coarseStride;
+        int coarseX = 0;
+        for (int x = 1; x < coarseWidth; x++) {
+            if (coarseCosts[coarseBottomOffset + x] < coarseCosts[coarseBottomOffset + coarseX]) {
+                coarseX = x;
+            }
+        }
+        for (int y = coarseHeight - 1; y >= 0; y--) {
+            coarsePath[y] = coarseX;
+            coarseX = coarseParents[y * coarseStride + coarseX];
+        }
+
+        // Refine inside the band around the upsampled coarse path
+        this.logger.log(Level.DEBUG, () -> "refining the seam inside a band of " + (2 * pyramidBandWidth + 1) + " columns");
+        int lastX = currentWidth - 1;
+        for (int y = 0; y < planeHeight; y++) {
+            int centerX = coarsePath[Math.min(y / scale, coarseHeight - 1)] * scale + scale / 2;
+            bandFromX[y] = Math.max(0, Math.min(centerX, lastX) - pyramidBandWidth);
+            bandToX[y] = Math.min(lastX, centerX + pyramidBandWidth);
+        }
+
+        calculateFirstCostRow(bandFromX[0], bandToX[0], costRows, 0);
+        for (int y = 1; y < planeHeight; y++) {
+            int prevOffset = ((y - 1) % costBufferRows) * planeWidth;
+            fillUnreachable(prevOffset, bandFromX[y] - 1, bandFromX[y - 1] - 1);
+            fillUnreachable(prevOffset, bandToX[y - 1] + 1, bandToX[y] + 1);
+            calculateCostRow(y, bandFromX[y], bandToX[y], costRows, prevOffset,
+                    costRows, (y % costBufferRows) * planeWidth, minParentsPaths);
+        }
+
+        int bottomOffset = ((planeHeight - 1) % costBufferRows) * planeWidth;
+        for (int x = bandFromX[planeHeight - 1]; x <= bandToX[planeHeight - 1]; x++) {
+            if (costRows[bottomOffset + x] < UNREACHABLE_COST)
+                return true;
         }
-        return cV;
+
+        this.logger.log(Level.DEBUG, "no seam fits in the band, falling back to the full costs matrix");
+        return false;
+    }
+
+    private void fillUnreachable(int rowOffset, int fromX, int toX) {
+        for (int x = Math.max(fromX, 0); x <= Math.min(toX, currentWidth - 1); x++) {
+            costRows[rowOffset + x] = UNREACHABLE_COST;
+        }
+    }
+
+    /**
+     * Builds the coarsest pyramid level of the current greyscale plane, every level
+     * averages the 2x2 blocks of the level below it. The levels between them are
+     * only needed while building, and the coarsest level is kept until the plane
+     * is transposed, enlarged or carved by a multi seam pass.
+     */
+    private void buildCoarseLevel() {
+        int[] level = greyScaledImage;
+        int width = currentWidth;
+        int height = planeHeight;
+        int stride = planeWidth;
+        for (int i = 1; i <= pyramidLevels; i++) {
+            int coarseLevelWidth = width >> 1;
+            int coarseLevelHeight = height >> 1;
+            int[] coarse = new int[coarseLevelWidth * coarseLevelHeight];
+            for (int y = 0; y < coarseLevelHeight; y++) {
+                int topOffset = 2 * y * stride;
+                int bottomOffset = topOffset + stride;
+                for (int x = 0; x < coarseLevelWidth; x++) {
+                    coarse[y * coarseLevelWidth + x] = (level[topOffset + 2 * x] + level[topOffset + 2 * x + 1]
+                            + level[bottomOffset + 2 * x] + level[bottomOffset + 2 * x + 1]) >> 2;
+                }
+            }
+            level = coarse;
+            width = coarseLevelWidth;
+            height = coarseLevelHeight;
+            stride = coarseLevelWidth;
+        }
+
+        coarseGrey = level;
+        coarseRemovals = new int[level.length];
+        coarseStride = width;
+        coarseWidth = width;
+        coarseHeight = height;
+        coarseCosts = ensureLength(coarseCosts, 2 * width);
+        coarseParents = ensureLength(coarseParents, level.length);
+        coarsePath = ensureLength(coarsePath, height);
+        bandFromX = ensureLength(bandFromX, planeHeight);
+        bandToX = ensureLength(bandToX, planeHeight);
+    }
+
+    /**
+     * Carves the coarse level along with the seam which was just removed from the plane.
+     * Every removed pixel is counted on the coarse cell which covers it, and once the
+     * plane loses another scale of columns, every coarse row loses the cell which
+     * covers the most removed pixels. So the coarse level keeps following the plane
+     * at the cost of its own size, instead of being averaged again per seam.
+     */
+    private void carveCoarseLevel() {
+        int targetWidth = currentWidth >> pyramidLevels;
+        if (targetWidth < 3) {
+            // Too narrow for the coarse to fine search, which falls back to the exact search
+            coarseGrey = null;
+            return;
+        }
+
+        int coarseLastX = coarseWidth - 1;
+        for (int y = 0; y < coarseHeight << pyramidLevels; y++) {
+            int coarseX = Math.min(seamPath[y] >> pyramidLevels, coarseLastX);
+            coarseRemovals[(y >> pyramidLevels) * coarseStride + coarseX]++;
+        }
+
+        for (; coarseWidth > targetWidth; coarseWidth--) {
+            for (int y = 0; y < coarseHeight; y++) {
+                int rowOffset = y * coarseStride;
+                int removedX = 0;
+                for (int x = 1; x < coarseWidth; x++) {
+                    if (coarseRemovals[rowOffset + x] > coarseRemovals[rowOffset + removedX]) {
+                        removedX = x;
+                    }
+                }
+                int tailLength = coarseWidth - removedX - 1;
+                System.arraycopy(coarseGrey, rowOffset + removedX + 1, coarseGrey, rowOffset + removedX, tailLength);
+                System.arraycopy(coarseRemovals, rowOffset + removedX + 1, coarseRemovals, rowOffset + removedX, tailLength);
+            }
+        }
+    }
+
+    /**
+     * Brings the full cost matrix up to date with the current greyscale plane.
+     * The first call calculates the whole matrix, the following calls assume that
+     * the matrix was compacted together with the last removed seam (seamPath) and
+     * only recalculate the cells around it, row by row. A cell can only change
+     * if its neighbourhood touches the seam, or if one of its parents changed,
+     * so every row is limited to the seam neighbourhood and the range below
+     * the cells which actually changed in the row above.
+     */
+    private void updateCostMatrix() {
+        int lastX = currentWidth - 1;
+        if (!costMatrixReady) {
+            this.logger.log(Level.DEBUG, "calculating the costs matrix");
+            calculateCostRows(costMatrix, planeHeight, minParentsPaths);
+            costMatrixReady = true;
+            return;
+        }
+
+        this.logger.log(Level.DEBUG, "updating the costs matrix");
+        int changedFromX = 0;
+        int changedToX = -1;
+        for (int y = 0; y < planeHeight; y++) {
+            // The cells whose neighbours on this row or the row above were shifted by the seam
+            int fromX = (y == 0 ? seamPath[0] : Math.min(seamPath[y], seamPath[y - 1])) - 1;
+            int toX = y == 0 ? seamPath[0] : Math.max(seamPath[y], seamPath[y - 1]);
+
+            // The cells below the cells which changed on the row above
+            if (changedFromX <= changedToX) {
+                fromX = Math.min(fromX, changedFromX - 1);
+                toX = Math.max(toX, changedToX + 1);
+            }
+            fromX = Math.max(fromX, 0);
+            toX = Math.min(toX, lastX);
+
+            int rowOffset = y * planeWidth;
+            System.arraycopy(costMatrix, rowOffset + fromX, previousCosts, 0, toX - fromX + 1);
+            if (y == 0) {
+                calculateFirstCostRow(fromX, toX, costMatrix, 0);
+            } else {
+                calculateCostRow(y, fromX, toX, costMatrix, rowOffset - planeWidth, costMatrix, rowOffset, minParentsPaths);
+            }
+
+            // Stop the update on the cells which kept their previous costs
+            changedFromX = toX + 1;
+            changedToX = fromX - 1;
+            for (int x = fromX; x <= toX; x++) {
+                if (costMatrix[rowOffset + x] != previousCosts[x - fromX]) {
+                    changedFromX = Math.min(changedFromX, x);
+                    changedToX = x;
+                }
+            }
+        }
+
+        if (verifyIncrementalUpdate) {
+            verifyCostMatrix();
+        }
+    }
+
+    private void verifyCostMatrix() {
+        int lastX = currentWidth - 1;
+        long[] fullCosts = new long[planeHeight * planeWidth];
+        int[] fullParents = new int[planeHeight * planeWidth];
+        calculateCostRows(fullCosts, planeHeight, fullParents);
+
+        for (int y = 0; y < planeHeight; y++) {
+            for (int x = 0; x <= lastX; x++) {
+                int i = y * planeWidth + x;
+                if (fullCosts[i] != costMatrix[i] || (y > 0 && fullParents[i] != minParentsPaths[i]))
+                    throw new RuntimeException("Incremental cost matrix update differs from a full calculation at ("
+                            + x + ", " + y + ")");
+            }
+        }
+    }
+
+    private void calculateFirstCostRow(int fromX, int toX, long[] costs, int costsOffset) {
+        PixelKernels.firstCostRow(greyScaledImage, currentWidth, fromX, toX, costs, costsOffset);
+    }
+
+    private void calculateCostRow(int y, int fromX, int toX, long[] prevCosts, int prevCostsOffset,
+                                  long[] currCosts, int currCostsOffset, int[] parents) {
+        PixelKernels.costRow(greyScaledImage, planeWidth, currentWidth, y, fromX, toX,
+                prevCosts, prevCostsOffset, currCosts, currCostsOffset, parents);
+    }
+
+    /**
+     * Finds the seams of this carver, and ranks the pixels of the carving plane
+     * by the seam which removes them.
+     * @return - The index of the seam of every carving plane pixel (row stride is
+     * the plane width), or SeamsIndexMap.KEPT for the pixels of no seam.
+     */
+    int[] findRemovalRanks() {
+        if (!seamsSearched) {
+            findKSeams();
+        }
+
+        int[] removalRanks = new int[planeWidth * planeHeight];
+        Arrays.fill(removalRanks, SeamsIndexMap.KEPT);
+        for (int k = 0; k < numOfSeams; k++) {
+            for (int y = 0; y < planeHeight; y++) {
+                removalRanks[y * planeWidth + allSeams[k][y]] = k;
+            }
+        }
+        return removalRanks;
     }
 
     private BufferedImage increaseImageWidth() {
-        BufferedImage increasedSizeImage = newEmptyOutputSizedImage();
+        enlargeToTarget(false);
+        return newCarvedImage(pixels, planeWidth, planeWidth);
+    }
 
+    /**
+     * Enlarges the current plane to the target width of the pass, in rounds of up to
+     * half of the current width each. Every round starts a new pass over the plane
+     * which the previous round enlarged, and reuses the buffers of the carver.
+     * @param keepGreyScaledImage - true in order to enlarge the greyscale plane
+     *                            after the last round as well.
+     */
+    private void enlargeToTarget(boolean keepGreyScaledImage) {
+        int targetWidth = targetPlaneWidth;
+        enlargePlane(keepGreyScaledImage || outPlaneWidth < targetWidth);
+        while (currentWidth < targetWidth) {
+            this.logger.log(Level.INFO, () -> "enlarging round from " + currentWidth + " to " + targetWidth + " columns");
+            startPass(targetWidth);
+            enlargePlane(keepGreyScaledImage || outPlaneWidth < targetWidth);
+        }
+    }
+
+    /**
+     * Duplicates the seams found in the current plane, which becomes a compact
+     * plane of outPlaneWidth columns. Every row is merged in a single sweep,
+     * since its seams are distinct columns of the plane.
+     * @param keepGreyScaledImage - true in order to enlarge the greyscale plane
+     *                            as well, for a following pass or round.
+     */
+    private void enlargePlane(boolean keepGreyScaledImage) {
         // Container for the enlarged size image
-        int[][] enlargedImageIndexMatrix = new int[outHeight][outWidth];
+        int[] enlargedImage = new int[outPlaneWidth * planeHeight];
+        int[] greyPlane = keepGreyScaledImage ? greyScaledImage.clone() : null;
+        int[] enlargedGreyPlane = keepGreyScaledImage ? new int[outPlaneWidth * planeHeight] : null;
 
         // Find the seams to be duplicated from original image
+        carvePixels = false;
         findKSeams();
 
-        // Insert the original image indexes to the new mapping matrix
-        setForEachInputParameters();
-        forEach((y, x) -> enlargedImageIndexMatrix[y][x] = x);
-
-        // Add the duplicated pixel indexes to the new image container
-        setForEachParameters(numOfSeams, outHeight);
-        forEach((y, x) -> enlargedImageIndexMatrix[y][inWidth + x] = allSeams[x][y].getOriginalImageX());
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.GATHER);
+        // duplicatedRows[x] is y + 1 when a seam of row y passes through x
+        int[] duplicatedRows = new int[planeWidth];
+        for (int y = 0; y < planeHeight; y++) {
+            for (int k = 0; k < numOfSeams; k++) {
+                duplicatedRows[allSeams[k][y]] = y + 1;
+            }
 
-        // Sort each row of the full image container with all indexes
-        for (int[] newImageRow : enlargedImageIndexMatrix) {
-            Arrays.sort(newImageRow);
+            // Every pixel is followed by its duplicate, where a seam passes
+            int rowOffset = y * planeWidth;
+            for (int x = 0, target = y * outPlaneWidth; x < planeWidth; x++) {
+                boolean duplicated = duplicatedRows[x] == y + 1;
+                enlargedImage[target++] = pixels[rowOffset + x];
+                if (duplicated) {
+                    enlargedImage[target++] = pixels[rowOffset + x];
+                }
+            }
+            if (keepGreyScaledImage) {
+                for (int x = 0, target = y * outPlaneWidth; x < planeWidth; x++) {
+                    enlargedGreyPlane[target++] = greyPlane[rowOffset + x];
+                    if (duplicatedRows[x] == y + 1) {
+                        enlargedGreyPlane[target++] = greyPlane[rowOffset + x];
+                    }
+                }
+            }
         }
 
-        // Build output image according to the index mapping
-        setForEachParameters(outWidth, outHeight);
-        forEach((y, x) -> {
-            int rgb = workingImage.getRGB(enlargedImageIndexMatrix[y][x], y);
-            increasedSizeImage.setRGB(x, y, rgb);
-        });
-
-        return increasedSizeImage;
+        pixels = enlargedImage;
+        greyScaledImage = enlargedGreyPlane;
+        planeWidth = outPlaneWidth;
+        currentWidth = outPlaneWidth;
+        // The coarse level is of the previous plane
+        coarseGrey = null;
+        timer.stop();
     }
 
     /**
      * This method colors the pixels which would have been used
      * to construct seams in order to reduce/increase the image size
-     * based on the Seam carving algorithm.
+     * based on the Seam carving algorithm. An enlargement by more than half
+     * of the width shows the seams of its first round, the ones of the working image.
      * @param seamColorRGB - Color chosen for seam pixels.
      * @return - Copy of the image including the colored pixels.
      */
     public BufferedImage showSeams(int seamColorRGB) {
-        BufferedImage coloredImage = duplicateWorkingImage();
+        if (retargeting)
+            throw new RuntimeException("Can not show the seams of a two dimensional retargeting session");
+
+        int[] coloredImage = pixels == workingPixels ? workingPixels.clone() : pixels;
 
         if (numOfSeams > 0) {
+            previewSeamRGB = seamColorRGB;
             findKSeams();
-            setForEachHeight(inHeight);
 
             // Use the seams found in order to color the working image copy
-            for (SeamData[] currentSeamData : allSeams) {
-                forEachHeight(y -> {
-                    int currentSeamXIndex = currentSeamData[y].getOriginalImageX();
-                    coloredImage.setRGB(currentSeamXIndex, y, seamColorRGB);
-                });
+            for (int[] currentSeam : allSeams) {
+                for (int y = 0; y < planeHeight; y++) {
+                    coloredImage[y * planeWidth + currentSeam[y]] = seamColorRGB;
+                }
             }
         }
 
-        return coloredImage;
+        return newCarvedImage(coloredImage, planeWidth, planeWidth);
     }
 }
@@ -0,0 +1,190 @@
+package edu.cg;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import edu.cg.Logger.Level;
+import edu.cg.SeamsCarver.Orientation;
+
+/**
+ * A compact file of the seam removal order of an image (see SeamsIndexMap).
+ * The header holds the image size, the seams orientation, the maximal number
+ * of seams, the RGB weights and the content hash of the image, followed by
+ * the offset of every carving plane row. Every row lists its removed pixels
+ * from left to right, each one as the varint distance from the previous removed
+ * pixel followed by the varint index of its seam.
+ * A loaded file is memory mapped, and its rows are decoded only while gathering
+ * the pixels of a resized image.
+ */
+public class SeamsIndexFile {
+
+    //MARK: Format
+    private static final int MAGIC = 0x5345414D; // "SEAM"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 9 * Integer.BYTES + Long.BYTES;
+
+    private SeamsIndexFile() {
+    }
+
+    //MARK: Methods
+    /**
+     * Writes the removal order of the map, which is read row by row.
+     * @param map - The removal order of an image.
+     * @param file - The file to create or overwrite.
+     */
+    public static void write(SeamsIndexMap map, Path file) throws IOException {
+        int[] rowRanks = new int[map.planeWidth];
+        int[] rowOffsets = new int[map.planeHeight + 1];
+        for (int y = 0; y < map.planeHeight; y++) {
+            map.readRowRanks(y, rowRanks);
+            long rowEnd = rowOffsets[y] + encodedRowLength(rowRanks, map.planeWidth);
+            if (HEADER_BYTES + 4L * rowOffsets.length + rowEnd > Integer.MAX_VALUE)
+                throw new IOException("The seams index is too large for a single file");
+
+            rowOffsets[y + 1] = (int) rowEnd;
+        }
+
+        map.logger.log(Level.INFO, () -> "writing a seams index file of " + rowOffsets[map.planeHeight] + " data bytes");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(map.inWidth);
+            out.writeInt(map.inHeight);
+            out.writeInt(map.orientation.ordinal());
+            out.writeInt(map.maxSeams);
+            out.writeInt(map.rgbWeights.redWeight);
+            out.writeInt(map.rgbWeights.greenWeight);
+            out.writeInt(map.rgbWeights.blueWeight);
+            out.writeLong(map.contentHash());
+            for (int rowOffset : rowOffsets) {
+                out.writeInt(rowOffset);
+            }
+
+            for (int y = 0; y < map.planeHeight; y++) {
+                map.readRowRanks(y, rowRanks);
+                int previousX = -1;
+                for (int x = 0; x < map.planeWidth; x++) {
+                    if (rowRanks[x] != SeamsIndexMap.KEPT) {
+                        writeVarint(out, x - previousX - 1);
+                        writeVarint(out, rowRanks[x]);
+                        previousX = x;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps a seams index file of the given image. Nothing but the header and
+     * the row offsets is read, the rows are decoded by every resize of the map.
+     * @param workingImage - The image the file was written for.
+     * @return - The removal order of the image, with the RGB weights it was found with.
+     */
+    public static SeamsIndexMap load(Logger logger, BufferedImage workingImage, Path file) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Not a seams index file: " + file);
+
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION
+                || data.getInt(16) < 0 || data.getInt(16) >= Orientation.values().length)
+            throw new IOException("Not a seams index file: " + file);
+
+        int width = data.getInt(8);
+        int height = data.getInt(12);
+        Orientation orientation = Orientation.values()[data.getInt(16)];
+        int maxSeams = data.getInt(20);
+        RGBWeights rgbWeights = new RGBWeights(data.getInt(24), data.getInt(28), data.getInt(32));
+        long contentHash = data.getLong(36);
+        if (width != workingImage.getWidth() || height != workingImage.getHeight())
+            throw new IllegalArgumentException("The seams index file does not match the image size");
+
+        // A map always holds the seams of half of the plane width (see SeamsIndexMap)
+        int planeWidth = orientation == Orientation.VERTICAL ? width : height;
+        if (maxSeams != planeWidth / 2)
+            throw new IOException("Not a seams index file: " + file);
+
+        int planeHeight = orientation == Orientation.VERTICAL ? height : width;
+        int dataOffset = HEADER_BYTES + 4 * (planeHeight + 1);
+        if (data.capacity() < dataOffset)
+            throw new IOException("Truncated seams index file: " + file);
+
+        data.position(HEADER_BYTES);
+        IntBuffer rowOffsets = data.slice().asIntBuffer();
+        if (data.capacity() != dataOffset + rowOffsets.get(planeHeight))
+            throw new IOException("Truncated seams index file: " + file);
+
+        logger.log(Level.INFO, () -> "mapped a seams index file of " + data.capacity() + " bytes");
+        SeamsIndexMap map = new SeamsIndexMap(logger, workingImage, rgbWeights, orientation, maxSeams,
+                (y, rowRanks) -> readRow(data, dataOffset + rowOffsets.get(y), dataOffset + rowOffsets.get(y + 1), rowRanks));
+        if (map.contentHash() != contentHash)
+            throw new IllegalArgumentException("The seams index file does not match the image content");
+
+        return map;
+    }
+
+    private static void readRow(MappedByteBuffer data, int fromPosition, int toPosition, int[] rowRanks) {
+        Arrays.fill(rowRanks, SeamsIndexMap.KEPT);
+
+        // The varints alternate between the distance from the previous pixel and the seam index
+        int x = -1;
+        boolean seamIndex = false;
+        int value = 0;
+        int shift = 0;
+        for (int position = fromPosition; position < toPosition; position++) {
+            byte b = data.get(position);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+            if (b >= 0) {
+                if (seamIndex) {
+                    rowRanks[x] = value;
+                } else {
+                    x += value + 1;
+                }
+                seamIndex = !seamIndex;
+                value = 0;
+                shift = 0;
+            }
+        }
+    }
+
+    private static long encodedRowLength(int[] rowRanks, int width) {
+        long length = 0;
+        int previousX = -1;
+        for (int x = 0; x < width; x++) {
+            if (rowRanks[x] != SeamsIndexMap.KEPT) {
+                length += varintLength(x - previousX - 1) + varintLength(rowRanks[x]);
+                previousX = x;
+            }
+        }
+        return length;
+    }
+
+    private static int varintLength(int value) {
+        int length = 1;
+        while ((value >>>= 7) != 0) {
+            length++;
+        }
+        return length;
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
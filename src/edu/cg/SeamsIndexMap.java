@@ -0,0 +1,119 @@
+package edu.cg;
+
+import java.awt.image.BufferedImage;
+
+import edu.cg.Logger.Level;
+import edu.cg.PhaseMetrics.Phase;
+import edu.cg.SeamsCarver.Orientation;
+
+/**
+ * The removal order of the seams of an image, found once for the maximal number
+ * of seams. Every pixel holds the index of the seam which removes it, so the image
+ * is resized to any size within that range by a single gather pass, without any
+ * dynamic programming: a reduction by k seams keeps the pixels of rank k and above,
+ * and an enlargement by k seams duplicates the pixels of rank below k.
+ */
+public class SeamsIndexMap extends ImageProcessor {
+
+    //MARK: The rank of the pixels which are not removed by any seam
+    public static final int KEPT = Integer.MAX_VALUE;
+
+    //MARK: An inner interface for reading the ranks of a carving plane row.
+    @FunctionalInterface
+    interface RanksReader {
+        void readRow(int y, int[] rowRanks);
+    }
+
+    //MARK: Fields
+    public final Orientation orientation;
+    public final int maxSeams;
+    public final int planeWidth;
+    public final int planeHeight;
+    private final RanksReader ranksReader;
+
+    //MARK: Constructors
+    public SeamsIndexMap(Logger logger, BufferedImage workingImage,
+                         RGBWeights rgbWeights, Orientation orientation) {
+        super(logger, workingImage, rgbWeights);
+
+        this.orientation = orientation;
+        planeWidth = orientation == Orientation.VERTICAL ? inWidth : inHeight;
+        planeHeight = orientation == Orientation.VERTICAL ? inHeight : inWidth;
+        maxSeams = planeWidth / 2;
+
+        // Seam index of every pixel in the carving plane layout (row stride is planeWidth)
+        logger.log(Level.INFO, () -> "finding the removal order of " + maxSeams + " seams");
+        SeamsCarver carver = new SeamsCarver(logger, workingImage, planeWidth - maxSeams, rgbWeights, orientation);
+        int[] removalRanks = carver.findRemovalRanks();
+        ranksReader = (y, rowRanks) -> System.arraycopy(removalRanks, y * planeWidth, rowRanks, 0, planeWidth);
+    }
+
+    /**
+     * A removal order which was found before, whose rows are read on demand.
+     */
+    SeamsIndexMap(Logger logger, BufferedImage workingImage, RGBWeights rgbWeights,
+                  Orientation orientation, int maxSeams, RanksReader ranksReader) {
+        super(logger, workingImage, rgbWeights);
+
+        this.orientation = orientation;
+        planeWidth = orientation == Orientation.VERTICAL ? inWidth : inHeight;
+        planeHeight = orientation == Orientation.VERTICAL ? inHeight : inWidth;
+        this.maxSeams = maxSeams;
+        this.ranksReader = ranksReader;
+    }
+
+    //MARK: Methods
+    /**
+     * @param outSize - The output width for vertical seams,
+     *                or the output height for horizontal seams.
+     * @return - The working image with the first seams of the removal order
+     * removed or duplicated, the same image SeamsCarver would produce.
+     */
+    public BufferedImage resize(int outSize) {
+        int seams = Math.abs(outSize - planeWidth);
+        if (seams > maxSeams)
+            throw new RuntimeException("Can not apply seam carving: too many seams...");
+
+        logger.log(Level.INFO, () -> "gathering " + outSize + " pixels per row out of the removal order");
+        PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.GATHER);
+        boolean enlarge = outSize > planeWidth;
+        int[] resized = new int[outSize * planeHeight];
+
+        // The horizontal plane row y is the image column y, from the bottom up
+        boolean vertical = orientation == Orientation.VERTICAL;
+        int sourceStep = vertical ? 1 : -inWidth;
+        int targetStep = vertical ? 1 : -planeHeight;
+
+        parallelForEachRows(planeHeight, (fromY, toY) -> {
+            int[] rowRanks = new int[planeWidth];
+            for (int y = fromY; y < toY; y++) {
+                ranksReader.readRow(y, rowRanks);
+                int source = vertical ? y * inWidth : (inHeight - 1) * inWidth + y;
+                int target = vertical ? y * outSize : (outSize - 1) * planeHeight + y;
+                for (int x = 0; x < planeWidth; x++, source += sourceStep) {
+                    int rank = rowRanks[x];
+                    if (enlarge || rank >= seams) {
+                        resized[target] = workingPixels[source];
+                        target += targetStep;
+                    }
+                    if (enlarge && rank < seams) {
+                        resized[target] = workingPixels[source];
+                        target += targetStep;
+                    }
+                }
+            }
+        });
+        timer.stop();
+
+        return vertical ? newImage(resized, outSize, planeHeight) : newImage(resized, planeHeight, outSize);
+    }
+
+    /**
+     * @param y - A row of the carving plane.
+     * @param rowRanks - Filled with the seam index of every pixel of the row,
+     *                 or KEPT for the pixels of no seam.
+     */
+    public void readRowRanks(int y, int[] rowRanks) {
+        ranksReader.readRow(y, rowRanks);
+    }
+}
@@ -0,0 +1,163 @@
+package edu.cg;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import edu.cg.Logger.Level;
+import edu.cg.PhaseMetrics.Phase;
+
+/**
+ * Applies the ImageProcessor operations to raw image files (see RawImageFile)
+ * in horizontal strips, for images larger than the heap. Every strip is read
+ * together with the halo rows its operation needs around it, processed, and
+ * written to the output file before the next strip is read, so the peak memory
+ * is proportional to the strip height. The results are the same as the results
+ * of the operations on the whole image.
+ */
+public class StripProcessor extends FunctioalForEachLoops {
+
+    //MARK: Inner interfaces for the operations of a strip
+    @FunctionalInterface
+    private interface StripOperation {
+        BufferedImage apply(ImageProcessor processor);
+    }
+
+    @FunctionalInterface
+    private interface SourceRow {
+        int sourceY(int y, int inHeight, int outHeight);
+    }
+
+    @FunctionalInterface
+    private interface ResamplingKernel {
+        int pixel(int[] source, int sourceFromY, int inWidth, int inHeight,
+                  int outWidth, int outHeight, int y, int x);
+    }
+
+    //MARK: Fields
+    public final Logger logger;
+    public final RGBWeights rgbWeights;
+    public final int stripRows;
+    // The processors of the strips only report their failures
+    private final Logger stripLogger;
+
+    //MARK: Constructor
+    /**
+     * @param stripRows - Rows of every strip, at least 2. A resizing strip holds up to
+     *                  stripRows source rows and up to stripRows output rows.
+     */
+    public StripProcessor(Logger logger, RGBWeights rgbWeights, int stripRows) {
+        if (stripRows < 2)
+            throw new IllegalArgumentException("A strip must hold at least 2 rows");
+
+        this.logger = logger;
+        this.rgbWeights = rgbWeights;
+        this.stripRows = stripRows;
+        stripLogger = Logger.atLevel(logger, Level.WARN);
+    }
+
+    //MARK: Methods
+    public void changeHue(Path input, Path output) throws IOException {
+        processStrips(input, output, 0, ImageProcessor::changeHue);
+    }
+
+    public void greyscale(Path input, Path output) throws IOException {
+        processStrips(input, output, 0, ImageProcessor::greyscale);
+    }
+
+    /**
+     * Every pixel reads its right and lower neighbors, the lowest row reads
+     * the row above it, so the strips are read with a halo row on each side.
+     */
+    public void gradientMagnitude(Path input, Path output) throws IOException {
+        processStrips(input, output, 1, ImageProcessor::gradientMagnitude);
+    }
+
+    public void nearestNeighbor(Path input, Path output, int outWidth, int outHeight) throws IOException {
+        resampleStrips(input, output, outWidth, outHeight, ImageProcessor::nearestNeighborSourceY,
+                ImageProcessor::nearestNeighborSourceY, ImageProcessor::nearestNeighborPixel);
+    }
+
+    public void bilinear(Path input, Path output, int outWidth, int outHeight) throws IOException {
+        resampleStrips(input, output, outWidth, outHeight, ImageProcessor::bilinearSourceFromY,
+                ImageProcessor::bilinearSourceToY, ImageProcessor::bilinearPixel);
+    }
+
+    /**
+     * Applies an operation which keeps the image size to every strip, as an image
+     * of its own with haloRows more rows above and below it (within the image).
+     */
+    private void processStrips(Path input, Path output, int haloRows, StripOperation operation) throws IOException {
+        try (RawImageFile in = RawImageFile.open(input);
+             RawImageFile out = RawImageFile.create(output, in.width, in.height)) {
+            int[] rows = new int[bufferLength(stripRows + 2 * haloRows, in.width)];
+            logger.log(Level.INFO, () -> "processing " + in.width + "x" + in.height + " pixels in strips of " + stripRows + " rows");
+            for (int fromY = 0; fromY < in.height; fromY += stripRows) {
+                int toY = Math.min(fromY + stripRows, in.height);
+                int haloFromY = Math.max(0, fromY - haloRows);
+                int haloToY = Math.min(in.height, toY + haloRows);
+                logStrip(fromY, toY);
+
+                in.readRows(haloFromY, haloToY, rows, 0);
+                BufferedImage strip = new BufferedImage(in.width, haloToY - haloFromY, BufferedImage.TYPE_INT_ARGB);
+                ImageProcessor.writePixels(strip, rows, in.width);
+                int[] result = ImageProcessor.readPixels(operation.apply(new ImageProcessor(stripLogger, strip, rgbWeights)));
+
+                // The halo rows are written by their own strips
+                out.writeRows(fromY, toY, result, (fromY - haloFromY) * in.width);
+            }
+        }
+    }
+
+    /**
+     * Resizes the image a strip of output rows at a time. Every strip reads the
+     * band of source rows between the source rows of its first and last output rows,
+     * so it holds as many output rows as fit in a band of stripRows source rows.
+     */
+    private void resampleStrips(Path input, Path output, int outWidth, int outHeight, SourceRow sourceFromRow,
+                                SourceRow sourceToRow, ResamplingKernel kernel) throws IOException {
+        if (outWidth <= 0 || outHeight <= 0)
+            throw new IllegalArgumentException("The output size must be positive");
+
+        try (RawImageFile in = RawImageFile.open(input);
+             RawImageFile out = RawImageFile.create(output, outWidth, outHeight)) {
+            int inWidth = in.width;
+            int inHeight = in.height;
+            int[] source = new int[bufferLength(stripRows, inWidth)];
+            int[] rows = new int[bufferLength(stripRows, outWidth)];
+            logger.log(Level.INFO, () -> "resizing " + inWidth + "x" + inHeight + " pixels to "
+                    + outWidth + "x" + outHeight + " in strips of " + stripRows + " rows");
+            int fromY = 0;
+            while (fromY < outHeight) {
+                int sourceFromY = sourceFromRow.sourceY(fromY, inHeight, outHeight);
+                int toY = fromY + 1;
+                while (toY < outHeight && toY - fromY < stripRows
+                        && sourceToRow.sourceY(toY, inHeight, outHeight) - sourceFromY < stripRows) {
+                    toY++;
+                }
+                int sourceToY = sourceToRow.sourceY(toY - 1, inHeight, outHeight) + 1;
+                logStrip(fromY, toY);
+
+                in.readRows(sourceFromY, sourceToY, source, 0);
+                PhaseMetrics.Timer timer = PhaseMetrics.time(Phase.RESAMPLE);
+                int stripFromY = fromY;
+                parallelForEachPixel(outWidth, toY - fromY, (y, x) -> rows[y * outWidth + x] = kernel.pixel(source, sourceFromY,
+                        inWidth, inHeight, outWidth, outHeight, stripFromY + y, x));
+                timer.stop();
+                out.writeRows(fromY, toY, rows, 0);
+                fromY = toY;
+            }
+        }
+    }
+
+    private void logStrip(int fromY, int toY) {
+        logger.log(Level.DEBUG, () -> "strip of rows " + fromY + " to " + toY);
+    }
+
+    private static int bufferLength(int rows, int width) {
+        if ((long) rows * width > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The strips are too large, use fewer rows per strip");
+
+        return rows * width;
+    }
+}
@@ -0,0 +1,157 @@
+package edu.cg.batch;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import edu.cg.Logger;
+import edu.cg.Logger.Level;
+import edu.cg.PhaseMetrics;
+import edu.cg.RGBWeights;
+import edu.cg.ResultCache;
+
+/**
+ * The headless entry point, which processes a directory of images, or the images
+ * listed in a manifest file (one path per line, relative to the manifest).
+ */
+public class BatchMain {
+
+    private static final String USAGE = "Usage: <input directory | manifest> <output directory> "
+            + "<nearest | bilinear | bicubic | lanczos | seam | greyscale | gradient> [WIDTHxHEIGHT,...]\n"
+            + "    [--threads N] [--io-threads N] [--memory MB] [--cache MB] [--weights R,G,B] [--verbose]\n"
+            + "    [--strips ROWS] (the inputs are raw image files, processed in strips of ROWS rows)";
+
+    public static void main(String[] args) {
+        try {
+            System.exit(run(args) ? 0 : 1);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(2);
+        }
+    }
+
+    /**
+     * @return - true if all the images were processed.
+     */
+    public static boolean run(String[] args) throws IOException, InterruptedException {
+        List<String> positional = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        int ioThreads = 2;
+        long memoryCapBytes = Runtime.getRuntime().maxMemory() / 2;
+        long cacheBytes = 0;
+        RGBWeights rgbWeights = new RGBWeights(1, 1, 1);
+        boolean verbose = false;
+        int stripRows = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--io-threads":
+                    ioThreads = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--memory":
+                    memoryCapBytes = Long.parseLong(value(args, ++i)) << 20;
+                    break;
+                case "--cache":
+                    cacheBytes = Long.parseLong(value(args, ++i)) << 20;
+                    break;
+                case "--weights":
+                    String[] weights = value(args, ++i).split(",");
+                    if (weights.length != 3)
+                        throw new IllegalArgumentException("Weights must be R,G,B");
+                    rgbWeights = new RGBWeights(Integer.parseInt(weights[0]),
+                            Integer.parseInt(weights[1]), Integer.parseInt(weights[2]));
+                    break;
+                case "--strips":
+                    stripRows = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--verbose":
+                    verbose = true;
+                    break;
+                default:
+                    positional.add(args[i]);
+            }
+        }
+        if (positional.size() < 3 || positional.size() > 4)
+            throw new IllegalArgumentException("Expected an input, an output directory, an operation and the sizes");
+
+        Path input = Paths.get(positional.get(0));
+        Path outputDirectory = Paths.get(positional.get(1));
+        BatchOperation operation = BatchOperation.parse(positional.get(2));
+        int[][] outSizes = positional.size() == 4 ? parseSizes(positional.get(3)) : new int[0][];
+
+        // Only the failures are reported unless verbose, the processors log every step
+        Logger logger = Logger.atLevel(s -> System.err.println(s), verbose ? Level.DEBUG : Level.WARN);
+        Files.createDirectories(outputDirectory);
+        List<Path> inputs = listInputs(input);
+        System.out.println("Applying " + operation.title + " to " + inputs.size() + " images");
+
+        BatchProcessor processor = new BatchProcessor(logger, operation, rgbWeights, outSizes, outputDirectory);
+        processor.setThreads(threads, ioThreads);
+        processor.setMemoryCap(memoryCapBytes);
+        ResultCache resultCache = cacheBytes > 0 ? new ResultCache(logger, cacheBytes) : null;
+        processor.setResultCache(resultCache);
+        PhaseMetrics.registerMBean();
+        BatchReport report = stripRows > 0 ? processor.processStrips(inputs, stripRows) : processor.process(inputs);
+
+        System.out.println(report);
+        System.out.println(PhaseMetrics.global());
+        if (resultCache != null) {
+            System.out.println(resultCache);
+        }
+        return report.failures == 0;
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length)
+            throw new IllegalArgumentException("Missing value of " + args[i - 1]);
+
+        return args[i];
+    }
+
+    private static int[][] parseSizes(String sizes) {
+        String[] tokens = sizes.split(",");
+        int[][] outSizes = new int[tokens.length][];
+        for (int i = 0; i < tokens.length; i++) {
+            String[] size = tokens[i].trim().toLowerCase().split("x");
+            if (size.length != 2)
+                throw new IllegalArgumentException("Sizes must be WIDTHxHEIGHT: " + tokens[i]);
+
+            outSizes[i] = new int[] { Integer.parseInt(size[0]), Integer.parseInt(size[1]) };
+            if (outSizes[i][0] <= 0 || outSizes[i][1] <= 0)
+                throw new IllegalArgumentException("Sizes must be positive: " + tokens[i]);
+        }
+        return outSizes;
+    }
+
+    private static List<Path> listInputs(Path input) throws IOException {
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> files = Files.list(input)) {
+                return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+        }
+
+        Path base = input.toAbsolutePath().getParent();
+        List<Path> inputs = new ArrayList<>();
+        for (String line : Files.readAllLines(input)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                inputs.add(base.resolve(line));
+            }
+        }
+        return inputs;
+    }
+}
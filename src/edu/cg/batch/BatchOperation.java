@@ -0,0 +1,98 @@
+package edu.cg.batch;
+
+import java.awt.image.BufferedImage;
+import java.util.function.Consumer;
+
+import edu.cg.ImageProcessor;
+import edu.cg.Logger;
+import edu.cg.RGBWeights;
+import edu.cg.SeamsCarver;
+
+/**
+ * The operations of the batch processing, as named on the command line.
+ */
+public enum BatchOperation {
+    NEAREST_NEIGHBOR("nearest", true),
+    BILINEAR("bilinear", true),
+    BICUBIC("bicubic", true),
+    LANCZOS("lanczos", true),
+    SEAM_CARVING("seam", true),
+    GREYSCALE("greyscale", false),
+    GRADIENT("gradient", false);
+
+    public final String title;
+    public final boolean resizing;
+
+    BatchOperation(String title, boolean resizing) {
+        this.title = title;
+        this.resizing = resizing;
+    }
+
+    /**
+     * @param outWidth - The output width, ignored unless the operation is resizing.
+     * @param outHeight - The output height, ignored unless the operation is resizing.
+     */
+    public BufferedImage apply(Logger logger, BufferedImage image, RGBWeights rgbWeights,
+                               int outWidth, int outHeight) {
+        return apply(logger, image, rgbWeights, outWidth, outHeight, processor -> { });
+    }
+
+    /**
+     * @param setup - Prepares the processor of the operation before it runs, for example
+     *              with the mipmap pyramid or the plane cache of the image.
+     */
+    public BufferedImage apply(Logger logger, BufferedImage image, RGBWeights rgbWeights,
+                               int outWidth, int outHeight, Consumer<ImageProcessor> setup) {
+        ImageProcessor processor;
+        if (this == SEAM_CARVING) {
+            processor = new SeamsCarver(logger, image, outWidth, outHeight, rgbWeights);
+        } else if (resizing) {
+            processor = new ImageProcessor(logger, image, rgbWeights, outWidth, outHeight);
+        } else {
+            processor = new ImageProcessor(logger, image, rgbWeights);
+        }
+        setup.accept(processor);
+
+        switch (this) {
+            case NEAREST_NEIGHBOR:
+                return processor.nearestNeighbor();
+            case BILINEAR:
+                return processor.bilinear();
+            case BICUBIC:
+                return processor.bicubic();
+            case LANCZOS:
+                return processor.lanczos();
+            case SEAM_CARVING:
+                return ((SeamsCarver) processor).resize();
+            case GREYSCALE:
+                return processor.greyscale();
+            default:
+                return processor.gradientMagnitude();
+        }
+    }
+
+    /**
+     * @return - Whether the operation is an interpolation, which can start from a mipmap level.
+     */
+    public boolean interpolating() {
+        return resizing && this != SEAM_CARVING;
+    }
+
+    /**
+     * Working memory of the operation besides its input and output images,
+     * in bytes per input pixel.
+     */
+    int workingBytesPerPixel() {
+        // The seam carving planes: pixels, greyscale, original X indexes and parents,
+        // or the pixels and the mipmap levels (a third of the image) of the interpolations
+        return this == SEAM_CARVING ? 20 : interpolating() ? 6 : 4;
+    }
+
+    public static BatchOperation parse(String title) {
+        for (BatchOperation operation : values()) {
+            if (operation.title.equalsIgnoreCase(title) || operation.name().equalsIgnoreCase(title))
+                return operation;
+        }
+        throw new IllegalArgumentException("Unknown operation: " + title);
+    }
+}
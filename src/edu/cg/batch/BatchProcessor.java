@@ -0,0 +1,312 @@
+package edu.cg.batch;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import edu.cg.ImageProcessor;
+import edu.cg.Logger;
+import edu.cg.Logger.Level;
+import edu.cg.MipmapPyramid;
+import edu.cg.PlaneCache;
+import edu.cg.RGBWeights;
+import edu.cg.RawImageFile;
+import edu.cg.ResultCache;
+import edu.cg.StripProcessor;
+
+/**
+ * Applies an operation to many images. Every image goes through a decode, a process
+ * and an encode stage, each one with its own threads, so the decoding and encoding
+ * of some images overlap the processing of others. The images in flight are limited
+ * by an estimate of their memory, which is taken before decoding and returned after
+ * encoding, so the reading of new images waits while the memory cap is reached.
+ */
+public class BatchProcessor {
+
+    //MARK: Fields
+    private final Logger logger;
+    private final BatchOperation operation;
+    private final RGBWeights rgbWeights;
+    private final int[][] outSizes;
+    private final Path outputDirectory;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int ioThreads = 2;
+    private long memoryCapBytes = Runtime.getRuntime().maxMemory() / 2;
+    private ResultCache resultCache;
+
+    //MARK: Constructor
+    /**
+     * @param outSizes - The {width, height} output sizes, every image is resized
+     *                 to each of them. Ignored unless the operation is resizing.
+     */
+    public BatchProcessor(Logger logger, BatchOperation operation, RGBWeights rgbWeights,
+                          int[][] outSizes, Path outputDirectory) {
+        if (operation.resizing && outSizes.length == 0)
+            throw new IllegalArgumentException("A resizing operation needs at least one output size");
+
+        this.logger = logger;
+        this.operation = operation;
+        this.rgbWeights = rgbWeights;
+        this.outSizes = operation.resizing ? outSizes : new int[][] { { 0, 0 } };
+        this.outputDirectory = outputDirectory;
+    }
+
+    //MARK: Methods
+    /**
+     * @param threads - Number of threads of the process stage.
+     * @param ioThreads - Number of threads of each of the decode and encode stages.
+     */
+    public void setThreads(int threads, int ioThreads) {
+        if (threads < 1 | ioThreads < 1)
+            throw new IllegalArgumentException("Threads must be positive");
+
+        this.threads = threads;
+        this.ioThreads = ioThreads;
+    }
+
+    /**
+     * @param memoryCapBytes - Estimated memory of the images in flight, an image
+     *                       which needs more than the cap is processed alone.
+     */
+    public void setMemoryCap(long memoryCapBytes) {
+        if (memoryCapBytes < 1)
+            throw new IllegalArgumentException("The memory cap must be positive");
+
+        this.memoryCapBytes = memoryCapBytes;
+    }
+
+    /**
+     * @param resultCache - A cache of the results, so images with the same content
+     *                    are processed once, or null for no caching.
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public BatchReport process(List<Path> inputs) throws InterruptedException {
+        // The permits are KiB, so the cap can exceed the int range of bytes
+        int capPermits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, memoryCapBytes >> 10));
+        Semaphore memory = new Semaphore(capPermits);
+        AtomicInteger failures = new AtomicInteger();
+        AtomicLong pixels = new AtomicLong();
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<?>> images = new ArrayList<>();
+
+        ImageIO.setUseCache(false);
+        ExecutorService decoders = Executors.newFixedThreadPool(ioThreads);
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        ExecutorService encoders = Executors.newFixedThreadPool(ioThreads);
+        long start = System.nanoTime();
+        try {
+            for (Path input : inputs) {
+                int[] size;
+                try {
+                    size = readSize(input);
+                } catch (IOException e) {
+                    logger.log(Level.ERROR, "Failed to read " + input + ": " + e.getMessage());
+                    failures.incrementAndGet();
+                    continue;
+                }
+
+                int permits = (int) Math.min(capPermits, Math.max(1, estimateMemory(size[0], size[1]) >> 10));
+                memory.acquire(permits);
+                long imageStart = System.nanoTime();
+                images.add(CompletableFuture
+                        .supplyAsync(() -> decode(input), decoders)
+                        .thenApplyAsync(this::apply, workers)
+                        .thenAcceptAsync(results -> encode(input, results), encoders)
+                        .handle((ignored, failure) -> {
+                            memory.release(permits);
+                            if (failure != null) {
+                                Throwable cause = failure.getCause() != null ? failure.getCause() : failure;
+                                logger.log(Level.ERROR, "Failed to process " + input + ": " + cause.getMessage());
+                                failures.incrementAndGet();
+                            } else {
+                                latencies.add(System.nanoTime() - imageStart);
+                                pixels.addAndGet((long) size[0] * size[1]);
+                            }
+                            return null;
+                        }));
+            }
+            CompletableFuture.allOf(images.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            decoders.shutdown();
+            workers.shutdown();
+            encoders.shutdown();
+        }
+
+        long[] latencyNanos = new long[latencies.size()];
+        Iterator<Long> latency = latencies.iterator();
+        for (int i = 0; i < latencyNanos.length; i++) {
+            latencyNanos[i] = latency.next();
+        }
+        return new BatchReport(failures.get(), pixels.get(), System.nanoTime() - start, latencyNanos);
+    }
+
+    /**
+     * Applies the operation to raw image files (see RawImageFile) one at a time,
+     * in strips of the given height, so the images may be larger than the heap.
+     * The outputs are raw image files as well.
+     * @param stripRows - Rows of every strip, see StripProcessor.
+     */
+    public BatchReport processStrips(List<Path> inputs, int stripRows) {
+        if (operation == BatchOperation.SEAM_CARVING || operation == BatchOperation.BICUBIC
+                || operation == BatchOperation.LANCZOS)
+            throw new IllegalArgumentException("The " + operation.title + " operation can not be applied in strips");
+
+        StripProcessor processor = new StripProcessor(logger, rgbWeights, stripRows);
+        processor.setForEachPool(new ForkJoinPool(threads));
+        int failures = 0;
+        long pixels = 0;
+        long[] latencyNanos = new long[inputs.size()];
+        int processed = 0;
+        long start = System.nanoTime();
+        try {
+            for (Path input : inputs) {
+                long imageStart = System.nanoTime();
+                try {
+                    for (int i = 0; i < outSizes.length; i++) {
+                        Path output = outputPath(input, i, "raw");
+                        switch (operation) {
+                            case NEAREST_NEIGHBOR:
+                                processor.nearestNeighbor(input, output, outSizes[i][0], outSizes[i][1]);
+                                break;
+                            case BILINEAR:
+                                processor.bilinear(input, output, outSizes[i][0], outSizes[i][1]);
+                                break;
+                            case GREYSCALE:
+                                processor.greyscale(input, output);
+                                break;
+                            default:
+                                processor.gradientMagnitude(input, output);
+                                break;
+                        }
+                    }
+                    try (RawImageFile raw = RawImageFile.open(input)) {
+                        pixels += (long) raw.width * raw.height;
+                    }
+                    latencyNanos[processed++] = System.nanoTime() - imageStart;
+                } catch (IOException | RuntimeException e) {
+                    logger.log(Level.ERROR, "Failed to process " + input + ": " + e.getMessage());
+                    failures++;
+                }
+            }
+        } finally {
+            processor.getForEachPool().shutdown();
+        }
+        return new BatchReport(failures, pixels, System.nanoTime() - start, Arrays.copyOf(latencyNanos, processed));
+    }
+
+    /**
+     * @return - The {width, height} of an image file, out of its header.
+     */
+    private static int[] readSize(Path input) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(input.toFile())) {
+            Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+            if (readers == null || !readers.hasNext())
+                throw new IOException("Unsupported image format");
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                return new int[] { reader.getWidth(0), reader.getHeight(0) };
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * @return - The bytes of the decoded image, its working pixels and the
+     * operation planes, and of all the output images with their pixels.
+     */
+    private long estimateMemory(int width, int height) {
+        long inputPixels = (long) width * height;
+        long memory = inputPixels * (8 + operation.workingBytesPerPixel());
+        for (int[] outSize : outSizes) {
+            long outputPixels = operation.resizing ? (long) outSize[0] * outSize[1] : inputPixels;
+            memory += outputPixels * 8;
+        }
+        return memory;
+    }
+
+    private BufferedImage decode(Path input) {
+        try {
+            BufferedImage image = ImageIO.read(input.toFile());
+            if (image == null)
+                throw new IOException("Unsupported image format");
+
+            return image;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode " + input, e);
+        }
+    }
+
+    /**
+     * The output sizes of an image share its mipmap pyramid, which is built once
+     * when any of them is a downscale by more than 2x, and its derived planes,
+     * which are kept until the image is done.
+     */
+    private BufferedImage[] apply(BufferedImage image) {
+        long contentHash = resultCache == null ? 0 : ImageProcessor.contentHash(image);
+        MipmapPyramid[] mipmaps = new MipmapPyramid[1];
+        PlaneCache planes = new PlaneCache(logger, Long.MAX_VALUE);
+        BufferedImage[] results = new BufferedImage[outSizes.length];
+        for (int i = 0; i < outSizes.length; i++) {
+            int outWidth = outSizes[i][0];
+            int outHeight = outSizes[i][1];
+            Supplier<BufferedImage> op = () -> operation.apply(logger, image, rgbWeights, outWidth, outHeight, processor -> {
+                // The cache holds the planes of this image alone, whatever its hash is
+                processor.setPlaneCache(planes, contentHash);
+                if (operation.interpolating() && mipmaps[0] == null
+                        && MipmapPyramid.reduces(image.getWidth(), image.getHeight(), outWidth, outHeight)) {
+                    mipmaps[0] = MipmapPyramid.of(image);
+                }
+                processor.setMipmaps(mipmaps[0]);
+            });
+            results[i] = resultCache == null ? op.get()
+                    : resultCache.get(new ResultCache.Key(contentHash, operation.title, outWidth, outHeight, rgbWeights), op);
+        }
+        return results;
+    }
+
+    private void encode(Path input, BufferedImage[] results) {
+        try {
+            for (int i = 0; i < results.length; i++) {
+                Path output = outputPath(input, i, "png");
+                if (!ImageIO.write(results[i], "png", output.toFile()))
+                    throw new IOException("No png writer for the image type " + results[i].getType());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode " + input, e);
+        }
+    }
+
+    /**
+     * @return - The output of an input for the output size of the given index.
+     */
+    private Path outputPath(Path input, int outSizeIndex, String extension) {
+        String name = input.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String suffix = operation.resizing ? "_" + outSizes[outSizeIndex][0] + "x" + outSizes[outSizeIndex][1] : "";
+        return outputDirectory.resolve((dot > 0 ? name.substring(0, dot) : name)
+                + "_" + operation.title + suffix + "." + extension);
+    }
+}
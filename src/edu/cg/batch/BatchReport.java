@@ -0,0 +1,61 @@
+package edu.cg.batch;
+
+import java.util.Arrays;
+
+/**
+ * The throughput and per image latency of a batch run.
+ */
+public class BatchReport {
+
+    //MARK: Fields
+    public final int images;
+    public final int failures;
+    public final long pixels;
+    public final long wallNanos;
+    private final long[] latencyNanos;
+
+    //MARK: Constructor
+    /**
+     * @param pixels - The number of input pixels of the processed images.
+     * @param latencyNanos - Decode to encode time of every processed image.
+     */
+    public BatchReport(int failures, long pixels, long wallNanos, long[] latencyNanos) {
+        this.images = latencyNanos.length;
+        this.failures = failures;
+        this.pixels = pixels;
+        this.wallNanos = wallNanos;
+        this.latencyNanos = latencyNanos.clone();
+        Arrays.sort(this.latencyNanos);
+    }
+
+    //MARK: Methods
+    public double imagesPerSecond() {
+        return wallNanos == 0 ? 0 : images * 1e9 / wallNanos;
+    }
+
+    public double megapixelsPerSecond() {
+        return wallNanos == 0 ? 0 : pixels * 1e3 / wallNanos;
+    }
+
+    /**
+     * @param percentile - Between 0 and 100.
+     * @return - The nearest rank percentile of the latencies, in milliseconds.
+     */
+    public double latencyMillis(double percentile) {
+        if (images == 0)
+            return 0;
+
+        int rank = (int) Math.ceil(percentile / 100 * images);
+        return latencyNanos[Math.max(0, Math.min(images, rank) - 1)] / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Processed %d images (%d failed) in %.3f s%n"
+                        + "Throughput: %.2f images/s, %.2f MP/s%n"
+                        + "Latency: p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms",
+                images, failures, wallNanos / 1e9,
+                imagesPerSecond(), megapixelsPerSecond(),
+                latencyMillis(50), latencyMillis(90), latencyMillis(99), latencyMillis(100));
+    }
+}
@@ -23,6 +23,7 @@ import javax.swing.border.EmptyBorder;
 public class ImageWindow extends JFrame {
 	private MenuWindow menuWindow;
 	private BufferedImage img;
+	private JPanel panelImage;
 
 	/**
 	 * Create the window.
@@ -48,16 +49,31 @@ public class ImageWindow extends JFrame {
 		});
 		contentPane.add(btnSaveAs, BorderLayout.NORTH);
 		
-		JPanel panelImage = new ImagePanel();
+		panelImage = new ImagePanel();
 		contentPane.add(panelImage, BorderLayout.CENTER);
 		
 		JButton btnSetWorkingImg = new JButton("Set as working image");
-		btnSetWorkingImg.addActionListener(e -> menuWindow.setWorkingImage(img, title));
+		btnSetWorkingImg.addActionListener(e -> menuWindow.setWorkingImage(this.img, getTitle()));
 		contentPane.add(btnSetWorkingImg, BorderLayout.SOUTH);
 		
 		pack();
 	}
 	
+	/**
+	 * Replaces the presented image in place, the window is resized to fit
+	 * an image of a different size.
+	 */
+	public void setImage(BufferedImage img, String title) {
+		boolean resized = img.getWidth() != this.img.getWidth() || img.getHeight() != this.img.getHeight();
+		this.img = img;
+		setTitle(title);
+		if (resized) {
+			panelImage.setPreferredSize(new Dimension(img.getWidth(), img.getHeight()));
+			pack();
+		}
+		panelImage.repaint();
+	}
+	
 	private class ImagePanel extends JPanel {
 		public ImagePanel() {
 			setPreferredSize(new Dimension(img.getWidth(), img.getHeight()));
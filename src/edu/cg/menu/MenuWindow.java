@@ -4,27 +4,67 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.GridLayout;
 import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.border.EmptyBorder;
 
 import edu.cg.RGBWeights;
 import edu.cg.ImageProcessor;
 import edu.cg.Logger;
+import edu.cg.Logger.Level;
+import edu.cg.MipmapCache;
+import edu.cg.MipmapPyramid;
+import edu.cg.PlaneCache;
+import edu.cg.ResultCache;
 import edu.cg.SeamsCarver;
+import edu.cg.SeamsCarver.Orientation;
 import edu.cg.menu.components.ActionsController;
 import edu.cg.menu.components.ColorMixer;
 import edu.cg.menu.components.ImagePicker;
+import edu.cg.menu.components.JobsPanel;
 import edu.cg.menu.components.LogField;
 import edu.cg.menu.components.ScaleSelector;
 import edu.cg.menu.components.ScaleSelector.ResizingOperation;
 
 @SuppressWarnings("serial")
 public class MenuWindow extends JFrame implements Logger {
+	//MARK: Results of up to this many bytes are kept for repeated operations
+	private static final long RESULT_CACHE_BYTES = 256L << 20;
+	
+	//MARK: Mipmap pyramids of up to this many bytes are kept for repeated downscales
+	private static final long MIPMAP_CACHE_BYTES = 128L << 20;
+	
+	//MARK: Grey levels and gradients of up to this many bytes are shared between operations
+	private static final long PLANE_CACHE_BYTES = 128L << 20;
+	
+	//MARK: Seam carving jobs present a preview every this many seams or milliseconds
+	private static final int PREVIEW_EVERY_SEAMS = 50;
+	private static final long PREVIEW_EVERY_MILLIS = 500;
+	
+	//MARK: An inner interface for the operations which run in the background.
+	@FunctionalInterface
+	private interface Job {
+		BufferedImage run(BufferedImage image, Consumer<ImageProcessor> setup);
+	}
+	
 	//MARK: fields
 	private BufferedImage workingImage;
 	private String imageTitle;
+	private long workingImageHash;
+	private final ResultCache resultCache;
+	private final MipmapCache mipmapCache;
+	private final PlaneCache planeCache;
+	private final ThreadPoolExecutor jobsExecutor;
 	
 	//MARK: GUI fields
 	private ImagePicker imagePicker;
@@ -32,6 +72,7 @@ public class MenuWindow extends JFrame implements Logger {
 	private ScaleSelector scaleSelector;
 	private ActionsController actionsController;
 	private LogField logField;
+	private JobsPanel jobsPanel;
 	
 	public MenuWindow() {
 		super();
@@ -50,6 +91,17 @@ public class MenuWindow extends JFrame implements Logger {
 		scaleSelector = new ScaleSelector();
 		actionsController = new ActionsController(this);
 		logField = new LogField();
+		resultCache = new ResultCache(this, RESULT_CACHE_BYTES);
+		mipmapCache = new MipmapCache(this, MIPMAP_CACHE_BYTES);
+		planeCache = new PlaneCache(this, PLANE_CACHE_BYTES);
+		
+		// The operations run one at a time unless more are allowed in the jobs panel
+		jobsExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+			Thread thread = new Thread(r, "Operation");
+			thread.setDaemon(true);
+			return thread;
+		});
+		jobsPanel = new JobsPanel(Math.max(4, Runtime.getRuntime().availableProcessors()), this::setConcurrentJobs);
 		
 		contentPane.add(imagePicker, BorderLayout.NORTH);
 		
@@ -70,6 +122,7 @@ public class MenuWindow extends JFrame implements Logger {
 		panel3.add(scaleSelector);
 		panel2.add(actionsController);
 		panel1.add(logField);
+		contentPane.add(jobsPanel, BorderLayout.SOUTH);
 		
 		workingImage = null;
 		imageTitle = null;
@@ -84,29 +137,29 @@ public class MenuWindow extends JFrame implements Logger {
 	}
 	
 	public void changeHue() {
-		int outWidth = scaleSelector.width();
-		int outHeight = scaleSelector.height();
 		RGBWeights rgbWeights = colorMixer.getRGBWeights();
-		BufferedImage img = new ImageProcessor(this,
-				duplicateImage(),
-				rgbWeights,
-				outWidth,
-				outHeight).changeHue();
-		present(img, "Change hue");
+		submit("Change hue", "changeHue", workingImage.getWidth(), workingImage.getHeight(), rgbWeights,
+				(image, setup) -> new ImageProcessor(this, duplicateImage(image), rgbWeights).changeHue());
 	}
 	
 	public void greyscale() {
-		BufferedImage img = new ImageProcessor(this,
-				duplicateImage(),
-				colorMixer.getRGBWeights()).greyscale();
-		present(img, "Grey scale");
+		RGBWeights rgbWeights = colorMixer.getRGBWeights();
+		submit("Grey scale", "greyscale", workingImage.getWidth(), workingImage.getHeight(), rgbWeights,
+				(image, setup) -> {
+					ImageProcessor processor = new ImageProcessor(this, duplicateImage(image), rgbWeights);
+					setup.accept(processor);
+					return processor.greyscale();
+				});
 	}
 	
 	public void gradientMagnitude() {
-		BufferedImage img = new ImageProcessor(this,
-				duplicateImage(),
-				colorMixer.getRGBWeights()).gradientMagnitude();
-		present(img, "Gradient magnitude");
+		RGBWeights rgbWeights = colorMixer.getRGBWeights();
+		submit("Gradient magnitude", "gradientMagnitude", workingImage.getWidth(), workingImage.getHeight(), rgbWeights,
+				(image, setup) -> {
+					ImageProcessor processor = new ImageProcessor(this, duplicateImage(image), rgbWeights);
+					setup.accept(processor);
+					return processor.gradientMagnitude();
+				});
 	}
 	
 	public void resize() {
@@ -114,87 +167,176 @@ public class MenuWindow extends JFrame implements Logger {
 		int outHeight = scaleSelector.height();
 		ResizingOperation op = scaleSelector.resizingOperation();
 		RGBWeights rgbWeights = colorMixer.getRGBWeights();
-		BufferedImage img;
-		switch(op) {
-		case NEAREST_NEIGHBOR:
-			img = new ImageProcessor(this,
-					duplicateImage(),
-					rgbWeights,
-					outWidth,
-					outHeight).nearestNeighbor();
-			break;
+		String title = "Resize: " + op.title + " [" + outWidth + "][" + outHeight + "]";
+		long imageHash = workingImageHash;
+		submit(title, "resize " + op, outWidth, outHeight, rgbWeights, (image, setup) -> {
+			if(op == ResizingOperation.SEAM_CARVING) {
+				SeamsCarver carver = new SeamsCarver(this, image, outWidth, outHeight, rgbWeights);
+				setup.accept(carver);
+				return carver.resize();
+			}
 			
-		case BILINEAR:
-			img = new ImageProcessor(this,
-					duplicateImage(),
+			ImageProcessor processor = new ImageProcessor(this,
+					duplicateImage(image),
 					rgbWeights,
 					outWidth,
-					outHeight).bilinear();
-			break;
-		
-		default: //seam carving
-			img = new SeamsCarver(this, duplicateImage(), outWidth, rgbWeights).resize();
-			img = new SeamsCarver(this, rotateClockwise(img), outHeight, rgbWeights).resize();
-			img = rotateCounterclockwise(img);
-			break;
-		}
-		
-		present(img, "Resize: " + op.title + " [" + outWidth + "][" + outHeight + "]");
+					outHeight);
+			setup.accept(processor);
+			if(MipmapPyramid.reduces(image.getWidth(), image.getHeight(), outWidth, outHeight))
+				processor.setMipmaps(mipmapCache.get(imageHash, image));
+			
+			switch(op) {
+			case NEAREST_NEIGHBOR:
+				return processor.nearestNeighbor();
+			case BILINEAR:
+				return processor.bilinear();
+			case BICUBIC:
+				return processor.bicubic();
+			default: //lanczos
+				return processor.lanczos();
+			}
+		});
 	}
 	
 	public void showSeamsVertical() {
 		int outWidth = scaleSelector.width();
 		RGBWeights rgbWeights = colorMixer.getRGBWeights();
-		BufferedImage vertical = new SeamsCarver(this, duplicateImage(),
-				outWidth, rgbWeights).showSeams(Color.RED.getRGB());
-		present(vertical, "Show seams vertical");
+		submit("Show seams vertical", "showSeamsVertical", outWidth, workingImage.getHeight(), rgbWeights,
+				(image, setup) -> {
+					SeamsCarver carver = new SeamsCarver(this, image, outWidth, rgbWeights);
+					setup.accept(carver);
+					return carver.showSeams(Color.RED.getRGB());
+				});
 	}
 
 	public void showSeamsHorizontal() {
 		int outHeight = scaleSelector.height();
 		RGBWeights rgbWeights = colorMixer.getRGBWeights();
-		
-		BufferedImage horizontal = new SeamsCarver(this, rotateClockwise(workingImage),
-				outHeight, rgbWeights).showSeams(Color.BLACK.getRGB());
-		
-		horizontal = rotateCounterclockwise(horizontal);
-		
-		present(horizontal, "Show seams horizontal");
+		submit("Show seams horizontal", "showSeamsHorizontal", workingImage.getWidth(), outHeight, rgbWeights,
+				(image, setup) -> {
+					SeamsCarver carver = new SeamsCarver(this, image, outHeight, rgbWeights, Orientation.HORIZONTAL);
+					setup.accept(carver);
+					return carver.showSeams(Color.BLACK.getRGB());
+				});
 	}
 	
-	private void present(BufferedImage img, String title) {
-		if(img == null)
-			throw new NullPointerException("Can not present a null image.");
-		
-		new ImageWindow(img, imageTitle + "; " + title, this).setVisible(true);
+	/**
+	 * Runs an operation on the working image as it is now, in the background.
+	 * Its result is cached, and presented once it is done.
+	 */
+	private void submit(String title, String operation, int outWidth, int outHeight,
+			RGBWeights rgbWeights, Job job) {
+		ResultCache.Key key = new ResultCache.Key(workingImageHash, operation, outWidth, outHeight, rgbWeights);
+		jobsExecutor.execute(new OperationWorker(title, key, job));
+	}
+	
+	private void setConcurrentJobs(int jobs) {
+		// The core size may never exceed the maximal size
+		if(jobs > jobsExecutor.getMaximumPoolSize()) {
+			jobsExecutor.setMaximumPoolSize(jobs);
+			jobsExecutor.setCorePoolSize(jobs);
+		} else {
+			jobsExecutor.setCorePoolSize(jobs);
+			jobsExecutor.setMaximumPoolSize(jobs);
+		}
+		log("Up to " + jobs + " operations run at once.");
 	}
 	
-	private static BufferedImage rotateClockwise(BufferedImage img) {
-		int imgWidth =  img.getWidth();
-		int imgHeight = img.getHeight();
-		BufferedImage ans = new BufferedImage(imgHeight, imgWidth, img.getType());
-		for(int y = 0; y < imgWidth; ++y)
-			for(int x = 0; x < imgHeight; ++x) {
-				int imgX = y;
-				int imgY = imgHeight-1-x;
-				ans.setRGB(x, y, img.getRGB(imgX, imgY));
+	/**
+	 * Runs an operation on a jobs executor thread, publishes its seams progress,
+	 * previews and its result on the event dispatch thread. The previews and the
+	 * result share a single window, which is updated in place. Cancelling interrupts
+	 * the operation thread, which the seams search checks before every seam.
+	 */
+	private class OperationWorker extends SwingWorker<BufferedImage, int[]> {
+		private final String title;
+		private final String windowTitle;
+		private final BufferedImage image;
+		private final ResultCache.Key key;
+		private final Job job;
+		private final JobsPanel.JobView view;
+		private ImageWindow previewWindow;
+		
+		public OperationWorker(String title, ResultCache.Key key, Job job) {
+			this.title = title;
+			this.key = key;
+			this.job = job;
+			windowTitle = imageTitle + "; " + title;
+			image = workingImage;
+			view = jobsPanel.addJob(title, () -> cancel(true));
+		}
+		
+		@Override
+		protected BufferedImage doInBackground() {
+			SwingUtilities.invokeLater(view::setStarted);
+			BufferedImage img = resultCache.get(key,
+					() -> job.run(image, this::setup));
+			log(resultCache.toString());
+			return img;
+		}
+		
+		/**
+		 * Shares the derived planes of the image with the other operations,
+		 * and monitors the seams progress and previews of a carver.
+		 */
+		private void setup(ImageProcessor processor) {
+			processor.setPlaneCache(planeCache, key.contentHash);
+			if(!(processor instanceof SeamsCarver))
+				return;
+			
+			SeamsCarver carver = (SeamsCarver)processor;
+			carver.setProgressListener((done, total) -> publish(new int[] { done, total }));
+			carver.setPreviewListener((preview, done, total) -> SwingUtilities.invokeLater(() -> {
+				if(!isDone())
+					showPreview(preview, windowTitle + " (preview " + done + " / " + total + " seams)");
+			}), PREVIEW_EVERY_SEAMS, PREVIEW_EVERY_MILLIS);
+		}
+		
+		private void showPreview(BufferedImage img, String title) {
+			if(previewWindow == null) {
+				previewWindow = new ImageWindow(img, title, MenuWindow.this);
+				previewWindow.setVisible(true);
+			} else {
+				previewWindow.setImage(img, title);
 			}
+		}
+		
+		@Override
+		protected void process(List<int[]> progress) {
+			int[] last = progress.get(progress.size() - 1);
+			view.setProgress(last[0], last[1]);
+		}
 		
-		return ans;
+		@Override
+		protected void done() {
+			view.remove();
+			if(isCancelled()) {
+				log(title + " has been cancelled.");
+				if(previewWindow != null)
+					previewWindow.setTitle(previewWindow.getTitle() + " - cancelled");
+				return;
+			}
+			
+			try {
+				if(previewWindow != null)
+					previewWindow.setImage(get(), windowTitle);
+				else
+					present(get(), windowTitle);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch(ExecutionException e) {
+				String msg = "Error in " + title + "!" + System.lineSeparator() + e.getCause().getMessage();
+				log(msg);
+				JOptionPane.showMessageDialog(MenuWindow.this, msg, "Error", JOptionPane.ERROR_MESSAGE);
+			}
+		}
 	}
 	
-	private static BufferedImage rotateCounterclockwise(BufferedImage img) {
-		int imgWidth =  img.getWidth();
-		int imgHeight = img.getHeight();
-		BufferedImage ans = new BufferedImage(imgHeight, imgWidth, img.getType());
-		for(int y = 0; y < imgWidth; ++y)
-			for(int x = 0; x < imgHeight; ++x) {
-				int imgX = imgWidth-1-y;
-				int imgY = x;
-				ans.setRGB(x, y, img.getRGB(imgX, imgY));
-			}
+	private void present(BufferedImage img, String title) {
+		if(img == null)
+			throw new NullPointerException("Can not present a null image.");
 		
-		return ans;
+		new ImageWindow(img, title, this).setVisible(true);
 	}
 	
 	private static BufferedImage duplicateImage(BufferedImage img) {
@@ -206,13 +348,10 @@ public class MenuWindow extends JFrame implements Logger {
 		return dup;
 	}
 	
-	private BufferedImage duplicateImage() {
-		return duplicateImage(workingImage);
-	}
-	
 	public void setWorkingImage(BufferedImage workingImage, String imageTitle) {
 		this.imageTitle = imageTitle;
 		this.workingImage = workingImage;
+		workingImageHash = ImageProcessor.contentHash(workingImage);
 		log("Image: " + imageTitle + " has been selected as working image.");
 		scaleSelector.setWidth(workingImage.getWidth());
 		scaleSelector.setHeight(workingImage.getHeight());
@@ -228,4 +367,10 @@ public class MenuWindow extends JFrame implements Logger {
 	public void log(String s) {
 		logField.log(s);
 	}
+	
+	@Override
+	public boolean isEnabled(Level level) {
+		// The details of every seam would flood the log field
+		return level.compareTo(Level.INFO) >= 0;
+	}
 }
@@ -0,0 +1,106 @@
+package edu.cg.menu.components;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.util.function.IntConsumer;
+
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.border.EtchedBorder;
+
+/**
+ * The operations running in the background, each one with its progress and
+ * a cancel button, and the number of operations which may run at once.
+ * Must be used on the event dispatch thread.
+ */
+@SuppressWarnings("serial")
+public class JobsPanel extends JPanel {
+	private JPanel jobs;
+	private JSpinner concurrentJobs;
+	
+	public JobsPanel(int maxConcurrentJobs, IntConsumer concurrentJobsListener) {
+		super();
+		
+		setBorder(new EtchedBorder(EtchedBorder.LOWERED, null, null));
+		setLayout(new BorderLayout(0, 0));
+		
+		JPanel settings = new JPanel();
+		settings.setLayout(new FlowLayout(FlowLayout.CENTER, 5, 5));
+		settings.add(new JLabel("Operations at once:"));
+		concurrentJobs = new JSpinner(new SpinnerNumberModel(1, 1, maxConcurrentJobs, 1));
+		concurrentJobs.addChangeListener(e -> concurrentJobsListener.accept((Integer)concurrentJobs.getValue()));
+		settings.add(concurrentJobs);
+		add(settings, BorderLayout.NORTH);
+		
+		jobs = new JPanel();
+		jobs.setLayout(new BoxLayout(jobs, BoxLayout.Y_AXIS));
+		JScrollPane scrollJobs = new JScrollPane(jobs);
+		scrollJobs.setPreferredSize(new Dimension(0, 100));
+		add(scrollJobs, BorderLayout.CENTER);
+	}
+	
+	/**
+	 * @param cancel - Called on the event dispatch thread when the cancel button is pressed.
+	 * @return - The row of the job, which must be removed once the job is done.
+	 */
+	public JobView addJob(String title, Runnable cancel) {
+		JobView view = new JobView(title, cancel);
+		jobs.add(view);
+		revalidateJobs();
+		return view;
+	}
+	
+	private void revalidateJobs() {
+		jobs.revalidate();
+		jobs.repaint();
+	}
+	
+	public class JobView extends JPanel {
+		private JProgressBar progressBar;
+		
+		private JobView(String title, Runnable cancel) {
+			super();
+			
+			setLayout(new FlowLayout(FlowLayout.LEFT, 5, 2));
+			add(new JLabel(title));
+			
+			// Indeterminate until the first progress report
+			progressBar = new JProgressBar();
+			progressBar.setIndeterminate(true);
+			progressBar.setStringPainted(true);
+			progressBar.setString("waiting");
+			add(progressBar);
+			
+			JButton btnCancel = new JButton("Cancel");
+			btnCancel.addActionListener(e -> {
+				btnCancel.setEnabled(false);
+				progressBar.setString("cancelling");
+				cancel.run();
+			});
+			add(btnCancel);
+		}
+		
+		public void setStarted() {
+			progressBar.setString("running");
+		}
+		
+		public void setProgress(int done, int total) {
+			progressBar.setIndeterminate(false);
+			progressBar.setMaximum(Math.max(total, 1));
+			progressBar.setValue(done);
+			progressBar.setString(done + " / " + total + " seams");
+		}
+		
+		public void remove() {
+			jobs.remove(this);
+			revalidateJobs();
+		}
+	}
+}
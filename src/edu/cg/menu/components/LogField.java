@@ -1,18 +1,22 @@
 package edu.cg.menu.components;
 
 import java.awt.BorderLayout;
-import java.util.Calendar;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
 import javax.swing.border.EtchedBorder;
 
 import edu.cg.Logger;
 
 @SuppressWarnings("serial")
 public class LogField extends JPanel implements Logger {
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+	
 	private JTextArea txtLog;
 	
 	
@@ -32,22 +36,17 @@ public class LogField extends JPanel implements Logger {
 		add(scrollLog);
 	}
 
+	/**
+	 * Can be called from any thread, the message is appended on the event dispatch thread.
+	 */
 	@Override
-	public synchronized void log(String s) {
-		if(s == null)
-			s = "null";
-		
-		Calendar cal = Calendar.getInstance();
-		String hh = convertTime(cal.get(Calendar.HOUR_OF_DAY));
-		String mm = convertTime(cal.get(Calendar.MINUTE));
-		String ss = convertTime(cal.get(Calendar.SECOND));
-		String time = "[" + hh + ":" + mm + ":" + ss + "] ~ ";
+	public void log(String s) {
+		String time = "[" + LocalTime.now().format(TIME_FORMAT) + "] ~ ";
 		String msg = time + s + System.lineSeparator();
-		txtLog.append(msg);
-	}
-	
-	private static String convertTime(int t) {
-		return (t < 10 ? "0" : "") + t;
+		if(SwingUtilities.isEventDispatchThread())
+			txtLog.append(msg);
+		else
+			SwingUtilities.invokeLater(() -> txtLog.append(msg));
 	}
 
 }
@@ -17,6 +17,8 @@ public class ScaleSelector extends JPanel {
 	
 	private Checkbox nearestNeighbor;
 	private Checkbox bilinear;
+	private Checkbox bicubic;
+	private Checkbox lanczos;
 	
 	public ScaleSelector() {
 		super();
@@ -34,9 +36,13 @@ public class ScaleSelector extends JPanel {
 		CheckboxGroup group = new CheckboxGroup();
 		nearestNeighbor = new Checkbox("Nearest neighbor  ", group, true);
 		bilinear = new Checkbox("Bilinear  ", group, false);
+		bicubic = new Checkbox("Bicubic  ", group, false);
+		lanczos = new Checkbox("Lanczos  ", group, false);
 		Checkbox seamCarving = new Checkbox("Seam carving", group, false);
 		add(nearestNeighbor);
 		add(bilinear);
+		add(bicubic);
+		add(lanczos);
 		add(seamCarving);
 	}
 	
@@ -71,6 +77,8 @@ public class ScaleSelector extends JPanel {
 	public static enum ResizingOperation {
 		NEAREST_NEIGHBOR("nearest neighbor"),
 		BILINEAR("bilinear"),
+		BICUBIC("bicubic"),
+		LANCZOS("lanczos"),
 		SEAM_CARVING("seam carving");
 		
 		public final String title;
@@ -84,6 +92,10 @@ public class ScaleSelector extends JPanel {
 			return ResizingOperation.NEAREST_NEIGHBOR;
 		else if(bilinear.getState())
 			return ResizingOperation.BILINEAR;
+		else if(bicubic.getState())
+			return ResizingOperation.BICUBIC;
+		else if(lanczos.getState())
+			return ResizingOperation.LANCZOS;
 		else
 			return ResizingOperation.SEAM_CARVING;
 	}
@@ -0,0 +1,285 @@
+package edu.cg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Every fast kernel of PixelKernels must give the same results as its reference,
+ * bit for bit, on random planes and on the edge cases: planes of one to three
+ * columns and one or two rows, zero, negative and overflowing weights, and the
+ * largest dividends of the reciprocal divisions. A kernel which throws must throw
+ * the same exception as its reference.
+ */
+class PixelKernelsTest {
+
+    // The largest weights sum whose weighted channels never overflow
+    private static final int MAX_EXACT_SUM = Integer.MAX_VALUE / 255;
+
+    private static final int[][] WEIGHTS = {
+            { 1, 1, 1 }, { 2, 5, 1 }, { 299, 587, 114 },
+            { 0, 0, 1 }, { 0, 7, 0 }, { 0, 0, 0 },
+            { -1, 2, 3 }, { 5, -3, 1 }, { -4, -4, -4 },
+            { Integer.MAX_VALUE, 1, 1 }, { MAX_EXACT_SUM + 1, 0, 0 }, { 1 << 20, 1 << 20, 1 << 20 },
+            { MAX_EXACT_SUM, 0, 0 }, { MAX_EXACT_SUM - 2, 1, 1 }, { 3000000, 3000000, MAX_EXACT_SUM - 6000000 },
+    };
+
+    private static final int[] SMALL_SIZES = { 1, 2, 3 };
+    private static final int SENTINEL = 0x5A5A5A5A;
+
+    private final Random random = new Random(20);
+
+    //MARK: Point kernels
+    @Test
+    void greyLevels() {
+        for (int[] pixels : pixelPlanes()) {
+            for (int[] weights : WEIGHTS) {
+                for (int[] range : ranges(pixels.length)) {
+                    int r = weights[0];
+                    int g = weights[1];
+                    int b = weights[2];
+                    int[] fast = filled(pixels.length);
+                    int[] reference = filled(pixels.length);
+                    assertSameOutcome("greyLevels " + Arrays.toString(weights),
+                            () -> PixelKernels.greyLevels(pixels, range[0], range[1], r, g, b, fast),
+                            () -> PixelKernels.referenceGreyLevels(pixels, range[0], range[1], r, g, b, reference));
+                    assertArrayEquals(reference, fast, "greyLevels " + Arrays.toString(weights));
+                }
+            }
+        }
+    }
+
+    @Test
+    void changeHue() {
+        for (int[] pixels : pixelPlanes()) {
+            for (int[] weights : WEIGHTS) {
+                int r = weights[0];
+                int g = weights[1];
+                int b = weights[2];
+                for (int max : new int[] { Math.max(r, Math.max(g, b)), r + g + b, 1, 0, -1 }) {
+                    for (int[] range : ranges(pixels.length)) {
+                        String name = "changeHue " + Arrays.toString(weights) + " / " + max;
+                        int[] fast = filled(pixels.length);
+                        int[] reference = filled(pixels.length);
+                        assertSameOutcome(name,
+                                () -> PixelKernels.changeHue(pixels, range[0], range[1], r, g, b, max, fast),
+                                () -> PixelKernels.referenceChangeHue(pixels, range[0], range[1], r, g, b, max, reference));
+                        assertArrayEquals(reference, fast, name);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void greyPixels() {
+        int[] levels = new int[256 + 64];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = i < 256 ? i : random.nextInt(256);
+        }
+        for (int[] range : ranges(levels.length)) {
+            int[] fast = filled(levels.length);
+            int[] reference = filled(levels.length);
+            PixelKernels.greyPixels(levels, range[0], range[1], fast);
+            PixelKernels.referenceGreyPixels(levels, range[0], range[1], reference);
+            assertArrayEquals(reference, fast, "greyPixels");
+        }
+    }
+
+    //MARK: Gradient kernel
+    @Test
+    void gradientRows() {
+        for (int[] size : planeSizes()) {
+            int width = size[0];
+            int height = size[1];
+            for (int[] grey : greyPlanes(width * height)) {
+                for (int[] rows : ranges(height)) {
+                    String name = "gradientRows " + width + "x" + height + " rows " + Arrays.toString(rows);
+                    int[] fast = filled(width * height);
+                    int[] reference = filled(width * height);
+                    assertSameOutcome(name,
+                            () -> PixelKernels.gradientRows(grey, width, height, rows[0], rows[1], fast),
+                            () -> PixelKernels.referenceGradientRows(grey, width, height, rows[0], rows[1], reference));
+                    assertArrayEquals(reference, fast, name);
+                }
+            }
+        }
+    }
+
+    //MARK: Seams cost kernels
+    @Test
+    void firstCostRow() {
+        for (int[] size : planeSizes()) {
+            int width = size[0];
+            for (int[] grey : greyPlanes(width)) {
+                for (int[] columns : ranges(width)) {
+                    int fromX = columns[0];
+                    int toX = columns[1] - 1;
+                    for (int costsOffset : new int[] { 0, width }) {
+                        String name = "firstCostRow " + width + " columns " + fromX + ".." + toX;
+                        long[] fast = filledCosts(2 * width);
+                        long[] reference = filledCosts(2 * width);
+                        assertSameOutcome(name,
+                                () -> PixelKernels.firstCostRow(grey, width, fromX, toX, fast, costsOffset),
+                                () -> PixelKernels.referenceFirstCostRow(grey, width, fromX, toX, reference, costsOffset));
+                        assertArrayEquals(reference, fast, name);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void costRow() {
+        for (int[] size : planeSizes()) {
+            int width = size[0];
+            int height = Math.max(size[1], 2);
+            for (int stride : new int[] { width, width + 3 }) {
+                for (int[] grey : greyPlanes(stride * height)) {
+                    for (long[] prevCosts : costRows(stride)) {
+                        int y = 1 + random.nextInt(height - 1);
+                        for (int[] columns : ranges(width)) {
+                            int fromX = columns[0];
+                            int toX = columns[1] - 1;
+                            String name = "costRow " + width + "x" + height + " stride " + stride
+                                    + " row " + y + " columns " + fromX + ".." + toX;
+                            long[] fastCosts = filledCosts(2 * stride);
+                            long[] referenceCosts = filledCosts(2 * stride);
+                            int[] fastParents = filled(stride * height);
+                            int[] referenceParents = filled(stride * height);
+                            assertSameOutcome(name,
+                                    () -> PixelKernels.costRow(grey, stride, width, y, fromX, toX,
+                                            prevCosts, 0, fastCosts, stride, fastParents),
+                                    () -> PixelKernels.referenceCostRow(grey, stride, width, y, fromX, toX,
+                                            prevCosts, 0, referenceCosts, stride, referenceParents));
+                            assertArrayEquals(referenceCosts, fastCosts, name + ": costs");
+                            assertArrayEquals(referenceParents, fastParents, name + ": parents");
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    //MARK: Inputs
+    /**
+     * @return - Packed ARGB planes: random ones, and planes of the extreme channels,
+     * whose weighted sums are the largest dividends of the grey and hue kernels.
+     */
+    private int[][] pixelPlanes() {
+        int length = 1 + random.nextInt(97);
+        int[][] planes = new int[8][length];
+        for (int i = 0; i < length; i++) {
+            planes[0][i] = random.nextInt();
+            planes[1][i] = random.nextInt() | 0xFFFFFF;
+        }
+        Arrays.fill(planes[2], 0xFFFFFFFF);
+        Arrays.fill(planes[3], 0);
+        Arrays.fill(planes[4], 0xFF000000);
+        for (int i = 0; i < length; i++) {
+            planes[5][i] = i % 2 == 0 ? 0xFFFFFFFF : 0xFF000000;
+            planes[6][i] = 0xFF000000 | (0xFF << (8 * (i % 3)));
+            planes[7][i] = 0xFF000000 | random.nextInt(2) * 0xFF0000 | (0xFE + random.nextInt(2)) << 8 | random.nextInt(256);
+        }
+        return planes;
+    }
+
+    /**
+     * @return - Grey planes of the given length: random levels, flat ones, levels
+     * alternating between the extremes, and random ints beyond the levels range.
+     */
+    private int[][] greyPlanes(int length) {
+        int[][] planes = new int[5][length];
+        for (int i = 0; i < length; i++) {
+            planes[0][i] = random.nextInt(256);
+            planes[1][i] = 128;
+            planes[2][i] = i % 2 == 0 ? 0 : 255;
+            planes[3][i] = random.nextInt(2) * 255;
+            planes[4][i] = random.nextInt(1 << 20) - (1 << 19);
+        }
+        return planes;
+    }
+
+    /**
+     * @return - Previous cost rows: random costs, equal costs which tie every
+     * parent, and costs mixed with the unreachable cells of the banded search.
+     */
+    private long[][] costRows(int length) {
+        long[][] rows = new long[4][length];
+        for (int i = 0; i < length; i++) {
+            rows[0][i] = random.nextInt(1 << 16);
+            rows[1][i] = 1000;
+            rows[2][i] = random.nextBoolean() ? Long.MAX_VALUE / 4 : random.nextInt(1 << 10);
+            rows[3][i] = (long) random.nextInt(Integer.MAX_VALUE) << 20;
+        }
+        return rows;
+    }
+
+    /**
+     * @return - {width, height} of the planes: every combination of one to three
+     * columns and rows, and random larger ones.
+     */
+    private int[][] planeSizes() {
+        int[][] sizes = new int[SMALL_SIZES.length * SMALL_SIZES.length + 6][];
+        int i = 0;
+        for (int width : SMALL_SIZES) {
+            for (int height : SMALL_SIZES) {
+                sizes[i++] = new int[] { width, height };
+            }
+        }
+        while (i < sizes.length) {
+            sizes[i++] = new int[] { 4 + random.nextInt(60), 1 + random.nextInt(20) };
+        }
+        return sizes;
+    }
+
+    /**
+     * @return - {from, to (exclusive)} ranges of 0..length: the whole range, an empty
+     * one, single elements at both ends, and random ones.
+     */
+    private int[][] ranges(int length) {
+        int[][] ranges = new int[8][];
+        ranges[0] = new int[] { 0, length };
+        ranges[1] = new int[] { length / 2, length / 2 };
+        ranges[2] = new int[] { 0, 1 };
+        ranges[3] = new int[] { length - 1, length };
+        for (int i = 4; i < ranges.length; i++) {
+            int from = random.nextInt(length);
+            ranges[i] = new int[] { from, from + 1 + random.nextInt(length - from) };
+        }
+        return ranges;
+    }
+
+    //MARK: Utilities
+    private static int[] filled(int length) {
+        int[] array = new int[length];
+        Arrays.fill(array, SENTINEL);
+        return array;
+    }
+
+    private static long[] filledCosts(int length) {
+        long[] array = new long[length];
+        Arrays.fill(array, SENTINEL);
+        return array;
+    }
+
+    /**
+     * Runs both kernels, which must either both complete or both throw the same exception.
+     */
+    private static void assertSameOutcome(String name, Runnable fast, Runnable reference) {
+        assertEquals(failure(reference), failure(fast), name + ": exception");
+    }
+
+    private static Class<?> failure(Runnable kernel) {
+        try {
+            kernel.run();
+            return null;
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+}
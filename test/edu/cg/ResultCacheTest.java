@@ -0,0 +1,56 @@
+package edu.cg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Every call of the result cache gets an image of its own, with the type and
+ * pixels of the cached result, so a caller which draws on its result changes
+ * neither the cached image nor the results of the other callers.
+ */
+class ResultCacheTest {
+
+    private static final RGBWeights RGB_WEIGHTS = new RGBWeights(1, 1, 1);
+    private static final int[] IMAGE_TYPES = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY };
+
+    @Test
+    void modifiedResults() {
+        for (int type : IMAGE_TYPES) {
+            ResultCache cache = new ResultCache(Logger.NONE, 1 << 20);
+            ResultCache.Key key = new ResultCache.Key(type, "greyscale", 12, 9, RGB_WEIGHTS);
+            BufferedImage calculated = noise(12, 9, type);
+            int[] pixels = ImageProcessor.readPixels(calculated);
+
+            BufferedImage first = cache.get(key, () -> calculated);
+            first.setRGB(3, 4, 0xFF123456);
+            BufferedImage second = cache.get(key, () -> noise(12, 9, type));
+            second.setRGB(5, 6, 0xFF654321);
+            BufferedImage third = cache.get(key, () -> noise(12, 9, type));
+
+            assertEquals(1, cache.getMisses(), "type " + type + ": misses");
+            assertEquals(2, cache.getHits(), "type " + type + ": hits");
+            assertNotSame(first, second, "type " + type);
+            assertEquals(type, third.getType(), "type " + type + ": image type");
+            assertArrayEquals(pixels, ImageProcessor.readPixels(third), "type " + type + ": pixels");
+        }
+    }
+
+    //MARK: Utilities
+    private static BufferedImage noise(int width, int height, int type) {
+        Random random = new Random(71);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+}
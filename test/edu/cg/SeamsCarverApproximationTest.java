@@ -0,0 +1,155 @@
+package edu.cg;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.cg.SeamsCarver.Orientation;
+
+/**
+ * The seams cost is the forward energy of every seam on the plane it is removed
+ * from, in every mode. The approximation quality compares every seam with the
+ * exact seam of that plane, so the approximate modes are never rated better than
+ * the exact algorithm, and the exact algorithm is rated exactly 1.0.
+ */
+class SeamsCarverApproximationTest {
+
+    private static final RGBWeights RGB_WEIGHTS = new RGBWeights(2, 5, 1);
+    private static final int[] SEAMS_PER_PASS = { 2, 4, 16, 0 };
+
+    @Test
+    void noise() {
+        Random random = new Random(5);
+        assertQuality("noise", image(300, 80, (x, y) -> random.nextInt(0x1000000)), 200, 60);
+    }
+
+    @Test
+    void stripes() {
+        // Flat stripes with a little noise, the cheap seams tie along the stripes
+        Random random = new Random(9);
+        assertQuality("stripes", image(300, 80, (x, y) ->
+                ((x * 7 + y * 3) % 50 < 25 ? 0x303030 : 0xC0C0C0) ^ random.nextInt(16)), 200, 60);
+    }
+
+    @Test
+    void gradient() {
+        assertQuality("gradient", image(120, 90, (x, y) -> (x * 2) << 16 | (y * 2) << 8 | (x + y)), 70, 50);
+    }
+
+    //MARK: Utilities
+    @FunctionalInterface
+    private interface Pattern {
+        int rgb(int x, int y);
+    }
+
+    private static BufferedImage image(int width, int height, Pattern pattern) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, pattern.rgb(x, y));
+            }
+        }
+        return image;
+    }
+
+    private static void assertQuality(String name, BufferedImage image, int outWidth, int outHeight) {
+        assertQuality(name + ", vertical", image, outWidth, Orientation.VERTICAL);
+        assertQuality(name + ", horizontal", image, outHeight, Orientation.HORIZONTAL);
+    }
+
+    private static void assertQuality(String name, BufferedImage image, int outSize, Orientation orientation) {
+        assertEquals(1.0, carver(image, outSize, orientation).measureApproximationQuality(), name + ": exact");
+        if (orientation == Orientation.VERTICAL) {
+            assertSeamsCost(name + ": exact", image, carver(image, outSize, orientation));
+        }
+
+        SeamsCarver incremental = carver(image, outSize, orientation);
+        incremental.setIncrementalUpdate(true);
+        assertEquals(1.0, incremental.measureApproximationQuality(), name + ": incremental");
+
+        for (int seamsPerPass : SEAMS_PER_PASS) {
+            SeamsCarver passes = carver(image, outSize, orientation);
+            passes.setSeamsPerPass(seamsPerPass);
+            assertInRange(passes.measureApproximationQuality(), name + ": " + seamsPerPass + " seams per pass");
+            if (orientation == Orientation.VERTICAL) {
+                assertSeamsCost(name + ": " + seamsPerPass + " seams per pass", image, passes);
+            }
+        }
+
+        SeamsCarver pyramid = carver(image, outSize, orientation);
+        pyramid.setPyramidSearch(2, 4);
+        assertInRange(pyramid.measureApproximationQuality(), name + ": pyramid search");
+    }
+
+    /**
+     * The seams cost must be the forward energy along every seam of the carver,
+     * on the image without the seams found before it.
+     */
+    private static void assertSeamsCost(String name, BufferedImage image, SeamsCarver carver) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] grey = new ImageProcessor(Logger.NONE, image, RGB_WEIGHTS).greyscaleLevels();
+        int[] ranks = carver.findRemovalRanks();
+        int seams = 0;
+        for (int rank : ranks) {
+            if (rank != SeamsIndexMap.KEPT) {
+                seams = Math.max(seams, rank + 1);
+            }
+        }
+
+        long cost = 0;
+        for (int k = 0; k < seams; k++) {
+            // The rows of the image without the former seams, and the column of the seam in them
+            int[][] rows = new int[height][];
+            int[] seamX = new int[height];
+            for (int y = 0; y < height; y++) {
+                int[] row = new int[width];
+                int rowWidth = 0;
+                for (int x = 0; x < width; x++) {
+                    int rank = ranks[y * width + x];
+                    if (rank == k) {
+                        seamX[y] = rowWidth;
+                    }
+                    if (rank >= k) {
+                        row[rowWidth++] = grey[y * width + x];
+                    }
+                }
+                rows[y] = Arrays.copyOf(row, rowWidth);
+            }
+
+            for (int y = 0; y < height; y++) {
+                int[] row = rows[y];
+                int x = seamX[y];
+                int lastX = row.length - 1;
+                int greyLeft = x > 0 ? row[x - 1] : 0;
+                int greyRight = x < lastX ? row[x + 1] : 0;
+                cost += Math.abs(row[x] - (x < lastX ? greyRight : greyLeft));
+                if (y == 0)
+                    continue;
+
+                cost += x == 0 ? greyRight : x == lastX ? greyLeft : Math.abs(greyRight - greyLeft);
+                int greyUp = rows[y - 1][x];
+                int parentX = seamX[y - 1];
+                if (parentX < x) {
+                    cost += Math.abs(greyUp - greyLeft);
+                } else if (parentX > x) {
+                    cost += Math.abs(greyUp - greyRight);
+                }
+            }
+        }
+        assertEquals(cost, carver.getSeamsCost(), name + ": seams cost");
+    }
+
+    private static void assertInRange(double quality, String name) {
+        assertTrue(quality > 0 && quality <= 1.0, name + ": quality " + quality);
+    }
+
+    private static SeamsCarver carver(BufferedImage image, int outSize, Orientation orientation) {
+        return new SeamsCarver(Logger.NONE, image, outSize, RGB_WEIGHTS, orientation);
+    }
+}
@@ -0,0 +1,119 @@
+package edu.cg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.cg.SeamsCarver.Orientation;
+
+/**
+ * Horizontal seams are carved in a rotated plane, which must give the same
+ * images as rotating the image clockwise, carving vertical seams and rotating
+ * the result back, for reductions, enlargements and the shown seams.
+ */
+class SeamsCarverHorizontalTest {
+
+    private static final RGBWeights RGB_WEIGHTS = new RGBWeights(2, 5, 1);
+    private static final int SEAM_RGB = 0xFF000000;
+
+    @Test
+    void noise() {
+        Random random = new Random(29);
+        assertSameImages("noise", image(37, 52, (x, y) -> random.nextInt(0x1000000)));
+    }
+
+    @Test
+    void flatRegions() {
+        Random random = new Random(31);
+        assertSameImages("flat regions", image(44, 40, (x, y) ->
+                y < 16 ? 0x808080 : x < 10 ? 0x102030 : random.nextInt(0x1000000)));
+    }
+
+    @Test
+    void diagonalBand() {
+        // Ties everywhere but along a band one pixel wide
+        assertSameImages("diagonal band", image(30, 41, (x, y) -> x == y ? 0xFF00FF : 0x3060A0));
+    }
+
+    @Test
+    void twoPixelImages() {
+        Random random = new Random(37);
+        assertSameImages("two rows", image(30, 2, (x, y) -> random.nextInt(0x1000000)));
+        assertSameImages("two columns", image(2, 30, (x, y) -> random.nextInt(0x1000000)));
+    }
+
+    //MARK: Utilities
+    @FunctionalInterface
+    private interface Pattern {
+        int rgb(int x, int y);
+    }
+
+    private static BufferedImage image(int width, int height, Pattern pattern) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, pattern.rgb(x, y));
+            }
+        }
+        return image;
+    }
+
+    private static void assertSameImages(String name, BufferedImage image) {
+        int height = image.getHeight();
+        for (int outHeight : new int[] { height - height / 2, height - height / 3, height - 1, height,
+                height + 1, height + height / 3, height + height / 2 }) {
+            String sizeName = name + ", height " + outHeight;
+            BufferedImage rotated = rotateClockwise(image);
+            assertSameImage(sizeName + ": resize",
+                    rotateCounterclockwise(verticalCarver(rotated, outHeight).resize()),
+                    horizontalCarver(image, outHeight).resize());
+            if (outHeight < height) {
+                assertSameImage(sizeName + ": show seams",
+                        rotateCounterclockwise(verticalCarver(rotated, outHeight).showSeams(SEAM_RGB)),
+                        horizontalCarver(image, outHeight).showSeams(SEAM_RGB));
+            }
+        }
+    }
+
+    private static void assertSameImage(String name, BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth(), name + ": width");
+        assertEquals(expected.getHeight(), actual.getHeight(), name + ": height");
+        assertArrayEquals(ImageProcessor.readPixels(expected), ImageProcessor.readPixels(actual), name + ": pixels");
+    }
+
+    private static SeamsCarver verticalCarver(BufferedImage image, int outWidth) {
+        return new SeamsCarver(Logger.NONE, image, outWidth, RGB_WEIGHTS, Orientation.VERTICAL);
+    }
+
+    private static SeamsCarver horizontalCarver(BufferedImage image, int outHeight) {
+        return new SeamsCarver(Logger.NONE, image, outHeight, RGB_WEIGHTS, Orientation.HORIZONTAL);
+    }
+
+    private static BufferedImage rotateClockwise(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage rotated = new BufferedImage(height, width, image.getType());
+        for (int y = 0; y < width; y++) {
+            for (int x = 0; x < height; x++) {
+                rotated.setRGB(x, y, image.getRGB(y, height - 1 - x));
+            }
+        }
+        return rotated;
+    }
+
+    private static BufferedImage rotateCounterclockwise(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage rotated = new BufferedImage(height, width, image.getType());
+        for (int y = 0; y < width; y++) {
+            for (int x = 0; x < height; x++) {
+                rotated.setRGB(x, y, image.getRGB(width - 1 - y, x));
+            }
+        }
+        return rotated;
+    }
+}
@@ -0,0 +1,109 @@
+package edu.cg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.cg.SeamsCarver.Orientation;
+
+/**
+ * The incremental cost matrix update, with every update verified against a full
+ * recalculation, must find the same seams and carve the same image as the exact
+ * search, on images which stress the update: flat regions where every path ties,
+ * repeated columns, and a band of a single pixel.
+ */
+class SeamsCarverIncrementalTest {
+
+    private static final RGBWeights RGB_WEIGHTS = new RGBWeights(2, 5, 1);
+    private static final double[] REDUCTIONS = { 0.3, 0.4, 0.5 };
+
+    @Test
+    void noise() {
+        Random random = new Random(7);
+        assertSameSeams("noise", image(48, 36, (x, y) -> random.nextInt(0x1000000)));
+    }
+
+    @Test
+    void flat() {
+        assertSameSeams("flat", image(40, 30, (x, y) -> 0x808080));
+    }
+
+    @Test
+    void flatRegions() {
+        Random random = new Random(11);
+        assertSameSeams("flat regions", image(52, 40, (x, y) ->
+                x < 20 ? 0x202020 : y < 15 ? 0xE0E0E0 : random.nextInt(0x1000000)));
+    }
+
+    @Test
+    void tiedStripes() {
+        // Every pair of columns repeats, so neighbouring paths have equal costs
+        assertSameSeams("tied stripes", image(44, 32, (x, y) -> (x / 2) % 2 == 0 ? 0x000000 : 0xFFFFFF));
+    }
+
+    @Test
+    void singlePixelBand() {
+        // A flat image crossed by a band one pixel wide, vertical and diagonal
+        assertSameSeams("single pixel band", image(46, 34, (x, y) ->
+                x == 23 || x == y ? 0xFF0000 : 0x3060A0));
+    }
+
+    @Test
+    void twoPixelImages() {
+        // The narrowest planes, of two rows or of two columns
+        Random random = new Random(3);
+        assertSameSeams("two rows", image(30, 2, (x, y) -> random.nextInt(0x1000000)));
+        assertSameSeams("two columns", image(2, 30, (x, y) -> random.nextInt(0x1000000)));
+    }
+
+    //MARK: Utilities
+    @FunctionalInterface
+    private interface Pattern {
+        int rgb(int x, int y);
+    }
+
+    private static BufferedImage image(int width, int height, Pattern pattern) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, pattern.rgb(x, y));
+            }
+        }
+        return image;
+    }
+
+    private static void assertSameSeams(String name, BufferedImage image) {
+        for (double reduction : REDUCTIONS) {
+            assertSameSeams(name + ", vertical " + reduction, image,
+                    image.getWidth() - (int) (image.getWidth() * reduction), Orientation.VERTICAL);
+            assertSameSeams(name + ", horizontal " + reduction, image,
+                    image.getHeight() - (int) (image.getHeight() * reduction), Orientation.HORIZONTAL);
+        }
+    }
+
+    private static void assertSameSeams(String name, BufferedImage image, int outSize, Orientation orientation) {
+        SeamsCarver exact = carver(image, outSize, orientation, false);
+        SeamsCarver incremental = carver(image, outSize, orientation, true);
+        assertArrayEquals(exact.findRemovalRanks(), incremental.findRemovalRanks(), name + ": seams");
+        assertEquals(exact.getSeamsCost(), incremental.getSeamsCost(), name + ": seams cost");
+
+        BufferedImage exactImage = carver(image, outSize, orientation, false).resize();
+        BufferedImage incrementalImage = carver(image, outSize, orientation, true).resize();
+        assertEquals(exactImage.getWidth(), incrementalImage.getWidth(), name + ": width");
+        assertEquals(exactImage.getHeight(), incrementalImage.getHeight(), name + ": height");
+        assertArrayEquals(ImageProcessor.readPixels(exactImage), ImageProcessor.readPixels(incrementalImage),
+                name + ": pixels");
+    }
+
+    private static SeamsCarver carver(BufferedImage image, int outSize, Orientation orientation,
+                                      boolean incrementalUpdate) {
+        SeamsCarver carver = new SeamsCarver(Logger.NONE, image, outSize, RGB_WEIGHTS, orientation);
+        carver.setIncrementalUpdate(incrementalUpdate);
+        carver.setVerifyIncrementalUpdate(incrementalUpdate);
+        return carver;
+    }
+}
@@ -0,0 +1,109 @@
+package edu.cg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import edu.cg.SeamsCarver.Orientation;
+
+/**
+ * The cost matrix calculated in parallel column tiles must find the same seams
+ * and carve the same image as the sequential calculation, for any number of tiles
+ * and any pool, on planes wide enough to be tiled and as tall as several bands.
+ */
+class SeamsCarverParallelTest {
+
+    private static final RGBWeights RGB_WEIGHTS = new RGBWeights(2, 5, 1);
+    private static final int[] PARALLELISM = { 2, 3, 4, 8 };
+
+    @Test
+    void noise() {
+        Random random = new Random(13);
+        BufferedImage image = image(1100, 70, (x, y) -> random.nextInt(0x1000000));
+        assertSameSeams("noise", image, 980, Orientation.VERTICAL);
+    }
+
+    @Test
+    void flatRegions() {
+        // The paths tie over the flat regions, across the tile edges
+        Random random = new Random(17);
+        BufferedImage image = image(1024, 40, (x, y) ->
+                x % 300 < 150 ? 0x406080 : random.nextInt(0x1000000));
+        assertSameSeams("flat regions", image, 900, Orientation.VERTICAL);
+    }
+
+    @Test
+    void horizontal() {
+        Random random = new Random(19);
+        BufferedImage image = image(45, 1030, (x, y) -> y % 64 < 8 ? 0xFFFFFF : random.nextInt(0x1000000));
+        assertSameSeams("horizontal", image, 930, Orientation.HORIZONTAL);
+    }
+
+    @Test
+    void incrementalUpdate() {
+        // The full cost matrix of the incremental update is tiled as well
+        Random random = new Random(23);
+        BufferedImage image = image(1050, 66, (x, y) -> random.nextInt(0x1000000));
+        SeamsCarver sequential = carver(image, 950, Orientation.VERTICAL, 1);
+        sequential.setIncrementalUpdate(true);
+        int[] ranks = sequential.findRemovalRanks();
+        for (int parallelism : PARALLELISM) {
+            SeamsCarver parallel = carver(image, 950, Orientation.VERTICAL, parallelism);
+            parallel.setIncrementalUpdate(true);
+            assertArrayEquals(ranks, parallel.findRemovalRanks(), "incremental update, parallelism " + parallelism);
+        }
+    }
+
+    //MARK: Utilities
+    @FunctionalInterface
+    private interface Pattern {
+        int rgb(int x, int y);
+    }
+
+    private static BufferedImage image(int width, int height, Pattern pattern) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, pattern.rgb(x, y));
+            }
+        }
+        return image;
+    }
+
+    private static void assertSameSeams(String name, BufferedImage image, int outSize, Orientation orientation) {
+        SeamsCarver sequential = carver(image, outSize, orientation, 1);
+        int[] ranks = sequential.findRemovalRanks();
+        int[] pixels = ImageProcessor.readPixels(carver(image, outSize, orientation, 1).resize());
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (int parallelism : PARALLELISM) {
+                String parallelName = name + ", parallelism " + parallelism;
+                SeamsCarver parallel = carver(image, outSize, orientation, parallelism);
+                assertArrayEquals(ranks, parallel.findRemovalRanks(), parallelName + ": seams");
+                assertEquals(sequential.getSeamsCost(), parallel.getSeamsCost(), parallelName + ": seams cost");
+                assertArrayEquals(pixels, ImageProcessor.readPixels(carver(image, outSize, orientation, parallelism)
+                        .resize()), parallelName + ": pixels");
+
+                // A pool of another size, the tiles do not depend on it
+                SeamsCarver pooled = carver(image, outSize, orientation, parallelism);
+                pooled.setForEachPool(pool);
+                assertArrayEquals(pixels, ImageProcessor.readPixels(pooled.resize()),
+                        parallelName + ", pool of 3 threads: pixels");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static SeamsCarver carver(BufferedImage image, int outSize, Orientation orientation, int parallelism) {
+        SeamsCarver carver = new SeamsCarver(Logger.NONE, image, outSize, RGB_WEIGHTS, orientation);
+        carver.setParallelism(parallelism);
+        return carver;
+    }
+}
@@ -0,0 +1,89 @@
+package edu.cg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.cg.SeamsCarver.Orientation;
+
+/**
+ * A two dimensional retargeting session carves the width first and then the height
+ * out of the same planes, which must give the same image as a vertical carver
+ * followed by a horizontal carver of its result, for every combination of
+ * reduced, unchanged and enlarged dimensions.
+ */
+class SeamsCarverRetargetingTest {
+
+    private static final RGBWeights RGB_WEIGHTS = new RGBWeights(2, 5, 1);
+
+    @Test
+    void noise() {
+        Random random = new Random(41);
+        assertSameImages("noise", image(48, 36, (x, y) -> random.nextInt(0x1000000)));
+    }
+
+    @Test
+    void flatRegions() {
+        Random random = new Random(43);
+        assertSameImages("flat regions", image(40, 44, (x, y) ->
+                x < 15 ? 0xE0E0E0 : y < 12 ? 0x202020 : random.nextInt(0x1000000)));
+    }
+
+    @Test
+    void tiedStripes() {
+        assertSameImages("tied stripes", image(36, 30, (x, y) -> ((x + y) / 2) % 2 == 0 ? 0x000000 : 0xFFFFFF));
+    }
+
+    @Test
+    void preparedImage() {
+        Random random = new Random(47);
+        BufferedImage image = image(42, 34, (x, y) -> random.nextInt(0x1000000));
+        PreparedImage prepared = new PreparedImage(Logger.NONE, image, RGB_WEIGHTS);
+        assertSameImage("prepared image", twoCarvers(image, 30, 25),
+                prepared.newSeamsCarver(Logger.NONE, 30, 25).resize());
+    }
+
+    //MARK: Utilities
+    @FunctionalInterface
+    private interface Pattern {
+        int rgb(int x, int y);
+    }
+
+    private static BufferedImage image(int width, int height, Pattern pattern) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, pattern.rgb(x, y));
+            }
+        }
+        return image;
+    }
+
+    private static void assertSameImages(String name, BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] outWidths = { width - width / 2, width - width / 3, width, width + width / 3 };
+        int[] outHeights = { height - height / 2, height - 1, height, height + 1, height + height / 2 };
+        for (int outWidth : outWidths) {
+            for (int outHeight : outHeights) {
+                assertSameImage(name + ", " + outWidth + "x" + outHeight, twoCarvers(image, outWidth, outHeight),
+                        new SeamsCarver(Logger.NONE, image, outWidth, outHeight, RGB_WEIGHTS).resize());
+            }
+        }
+    }
+
+    private static BufferedImage twoCarvers(BufferedImage image, int outWidth, int outHeight) {
+        BufferedImage carved = new SeamsCarver(Logger.NONE, image, outWidth, RGB_WEIGHTS, Orientation.VERTICAL).resize();
+        return new SeamsCarver(Logger.NONE, carved, outHeight, RGB_WEIGHTS, Orientation.HORIZONTAL).resize();
+    }
+
+    private static void assertSameImage(String name, BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth(), name + ": width");
+        assertEquals(expected.getHeight(), actual.getHeight(), name + ": height");
+        assertArrayEquals(ImageProcessor.readPixels(expected), ImageProcessor.readPixels(actual), name + ": pixels");
+    }
+}
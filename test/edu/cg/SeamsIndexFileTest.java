@@ -0,0 +1,82 @@
+package edu.cg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.cg.SeamsCarver.Orientation;
+
+/**
+ * A loaded seams index file must resize the image as the map it was written from,
+ * and a file whose header does not describe such a map must be rejected.
+ */
+class SeamsIndexFileTest {
+
+    private static final RGBWeights RGB_WEIGHTS = new RGBWeights(2, 5, 1);
+    // The position of the maximal number of seams in the header
+    private static final int MAX_SEAMS_POSITION = 20;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTrip() throws IOException {
+        BufferedImage image = noise(31, 24);
+        for (Orientation orientation : Orientation.values()) {
+            SeamsIndexMap map = new SeamsIndexMap(Logger.NONE, image, RGB_WEIGHTS, orientation);
+            Path file = directory.resolve(orientation + ".seams");
+            SeamsIndexFile.write(map, file);
+            SeamsIndexMap loaded = SeamsIndexFile.load(Logger.NONE, image, file);
+            for (int outSize = map.planeWidth - map.maxSeams; outSize <= map.planeWidth + map.maxSeams; outSize++) {
+                assertArrayEquals(ImageProcessor.readPixels(map.resize(outSize)),
+                        ImageProcessor.readPixels(loaded.resize(outSize)), orientation + " " + outSize + ": pixels");
+            }
+        }
+    }
+
+    @Test
+    void invalidMaxSeams() throws IOException {
+        BufferedImage image = noise(31, 24);
+        for (Orientation orientation : Orientation.values()) {
+            SeamsIndexMap map = new SeamsIndexMap(Logger.NONE, image, RGB_WEIGHTS, orientation);
+            for (int maxSeams : new int[] { 0, -1, map.maxSeams - 1, map.maxSeams + 1, map.planeWidth,
+                    Integer.MAX_VALUE }) {
+                Path file = directory.resolve(orientation + "-" + maxSeams + ".seams");
+                SeamsIndexFile.write(map, file);
+                writeInt(file, MAX_SEAMS_POSITION, maxSeams);
+                assertThrows(IOException.class, () -> SeamsIndexFile.load(Logger.NONE, image, file),
+                        orientation + ", max seams " + maxSeams);
+            }
+        }
+    }
+
+    //MARK: Utilities
+    private static BufferedImage noise(int width, int height) {
+        Random random = new Random(67);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static void writeInt(Path file, int position, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES).putInt(value);
+            buffer.flip();
+            channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package edu.cg;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.cg.SeamsCarver.Orientation;
+
+/**
+ * A seams index map must give the same image as a seams carver of the output
+ * size, for every size it allows: every reduction and enlargement by up to half
+ * of the width, or of the height for horizontal seams.
+ */
+class SeamsIndexMapTest {
+
+    private static final RGBWeights RGB_WEIGHTS = new RGBWeights(2, 5, 1);
+
+    @Test
+    void noise() {
+        Random random = new Random(53);
+        assertSameImages("noise", image(34, 27, (x, y) -> random.nextInt(0x1000000)));
+    }
+
+    @Test
+    void flatRegions() {
+        Random random = new Random(59);
+        assertSameImages("flat regions", image(30, 32, (x, y) ->
+                x < 12 ? 0x808080 : y < 10 ? 0x204060 : random.nextInt(0x1000000)));
+    }
+
+    @Test
+    void singlePixelBand() {
+        assertSameImages("single pixel band", image(28, 25, (x, y) -> x == 14 || y == 9 ? 0xFFFF00 : 0x3060A0));
+    }
+
+    @Test
+    void twoPixelImages() {
+        Random random = new Random(61);
+        assertSameImages("two rows", image(20, 2, (x, y) -> random.nextInt(0x1000000)));
+        assertSameImages("two columns", image(2, 20, (x, y) -> random.nextInt(0x1000000)));
+    }
+
+    //MARK: Utilities
+    @FunctionalInterface
+    private interface Pattern {
+        int rgb(int x, int y);
+    }
+
+    private static BufferedImage image(int width, int height, Pattern pattern) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, pattern.rgb(x, y));
+            }
+        }
+        return image;
+    }
+
+    private static void assertSameImages(String name, BufferedImage image) {
+        for (Orientation orientation : Orientation.values()) {
+            SeamsIndexMap indexMap = new SeamsIndexMap(Logger.NONE, image, RGB_WEIGHTS, orientation);
+            int planeWidth = indexMap.planeWidth;
+            for (int outSize = planeWidth - indexMap.maxSeams; outSize <= planeWidth + indexMap.maxSeams; outSize++) {
+                String sizeName = name + ", " + orientation.toString().toLowerCase() + " " + outSize;
+                BufferedImage expected = new SeamsCarver(Logger.NONE, image, outSize, RGB_WEIGHTS, orientation).resize();
+                BufferedImage actual = indexMap.resize(outSize);
+                assertEquals(expected.getWidth(), actual.getWidth(), sizeName + ": width");
+                assertEquals(expected.getHeight(), actual.getHeight(), sizeName + ": height");
+                assertArrayEquals(ImageProcessor.readPixels(expected), ImageProcessor.readPixels(actual),
+                        sizeName + ": pixels");
+            }
+        }
+    }
+}